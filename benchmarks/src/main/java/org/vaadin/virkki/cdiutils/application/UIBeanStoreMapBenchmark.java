@@ -0,0 +1,86 @@
+package org.vaadin.virkki.cdiutils.application;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.virkki.cdiutils.application.UIContext.UIBeanStore;
+
+/**
+ * Compares the UI id to bean store lookup of {@link UIBeanStoreMap} against
+ * the boxed HashMap lookup (containsKey + put + get) BeanStoreContainer used
+ * to do on each scoped bean access.
+ *
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UIBeanStoreMapBenchmark {
+
+    @Param({ "1", "4", "32" })
+    private int uis;
+
+    private int[] uiIds;
+    private int next;
+
+    private Map<Integer, UIBeanStore> hashMap;
+    private UIBeanStoreMap uiBeanStoreMap;
+
+    @Setup
+    public void setUp() {
+        uiIds = new int[uis];
+        hashMap = new HashMap<Integer, UIBeanStore>();
+        uiBeanStoreMap = new UIBeanStoreMap();
+        for (int i = 0; i < uis; i++) {
+            // UI ids are handed out sequentially within a session
+            uiIds[i] = i;
+            final UIBeanStore beanStore = new UIBeanStore(i);
+            hashMap.put(i, beanStore);
+            uiBeanStoreMap.putIfAbsent(i, beanStore);
+        }
+    }
+
+    private int nextUIId() {
+        final int uiId = uiIds[next];
+        next = next + 1 == uiIds.length ? 0 : next + 1;
+        return uiId;
+    }
+
+    @Benchmark
+    public UIBeanStore hashMap() {
+        final int uiId = nextUIId();
+        if (!hashMap.containsKey(uiId)) {
+            hashMap.put(uiId, new UIBeanStore(uiId));
+        }
+        return hashMap.get(uiId);
+    }
+
+    @Benchmark
+    public UIBeanStore uiBeanStoreMap() {
+        final int uiId = nextUIId();
+        UIBeanStore beanStore = uiBeanStoreMap.get(uiId);
+        if (beanStore == null) {
+            final UIBeanStore newBeanStore = new UIBeanStore(uiId);
+            beanStore = uiBeanStoreMap.putIfAbsent(uiId, newBeanStore);
+            if (beanStore == null) {
+                beanStore = newBeanStore;
+            }
+        }
+        return beanStore;
+    }
+}
@@ -0,0 +1,81 @@
+package org.vaadin.virkki.cdiutils.application;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.enterprise.context.spi.Context;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.virkki.cdiutils.application.UIContext.BeanStoreContainer;
+import org.vaadin.virkki.cdiutils.application.UIContext.UIScoped;
+import org.vaadin.virkki.cdiutils.benchmarks.StubSession;
+import org.vaadin.virkki.cdiutils.benchmarks.UIScopedBean;
+
+import com.vaadin.server.VaadinSession;
+
+/**
+ * Measures UIContextImpl.get() for a bean that already exists in the UI
+ * (warm) and for a bean that doesn't (cold). The cold case removes the bean
+ * store of the UI first, so it includes destroying the previous bean and
+ * creating both a new bean store and a new bean.
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UIContextBenchmark {
+    private StubSession session;
+    private BeanManager beanManager;
+    private Context context;
+    private Bean<UIScopedBean> bean;
+    private BeanStoreContainer container;
+    private int uiId;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setUp() {
+        beanManager = StubSession.getBeanManager();
+        session = new StubSession();
+        session.activate();
+        uiId = session.createUI().getUIId();
+
+        context = beanManager.getContext(UIScoped.class);
+        bean = (Bean<UIScopedBean>) beanManager.resolve(beanManager
+                .getBeans(UIScopedBean.class));
+        context.get(bean, beanManager.createCreationalContext(bean));
+        container = UIContext.getBeanStoreContainer(
+                VaadinSession.getCurrent(), beanManager,
+                UIContext.getContainerBean(beanManager));
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.deactivate();
+    }
+
+    @Benchmark
+    public UIScopedBean warm() {
+        return context.get(bean);
+    }
+
+    @Benchmark
+    public UIScopedBean cold() {
+        container.uiDetached(uiId);
+        return context.get(bean, beanManager.createCreationalContext(bean));
+    }
+}
@@ -0,0 +1,28 @@
+package org.vaadin.virkki.cdiutils.benchmarks;
+
+import org.vaadin.virkki.cdiutils.mvp.AbstractPresenter;
+import org.vaadin.virkki.cdiutils.mvp.AbstractPresenter.ViewInterface;
+
+/**
+ * Counts the view openings so that the dispatch can't be optimized away.
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+@SuppressWarnings("serial")
+@ViewInterface(BenchmarkView.class)
+public class BenchmarkPresenter extends AbstractPresenter<BenchmarkView> {
+    private int openCount;
+
+    @Override
+    protected void initPresenter() {
+    }
+
+    @Override
+    public void viewOpened() {
+        openCount++;
+    }
+
+    public int getOpenCount() {
+        return openCount;
+    }
+}
@@ -0,0 +1,25 @@
+package org.vaadin.virkki.cdiutils.benchmarks;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.vaadin.virkki.cdiutils.TextBundle;
+
+/**
+ * TextBundle whose texts can be changed to force the Localizer to update the
+ * registered components.
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+@ApplicationScoped
+public class BenchmarkTextBundle implements TextBundle {
+    private volatile String suffix = "";
+
+    @Override
+    public String getText(final String key, final Object... params) {
+        return key + suffix;
+    }
+
+    public void setSuffix(final String suffix) {
+        this.suffix = suffix;
+    }
+}
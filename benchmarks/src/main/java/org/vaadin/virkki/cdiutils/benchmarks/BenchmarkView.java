@@ -0,0 +1,13 @@
+package org.vaadin.virkki.cdiutils.benchmarks;
+
+import org.vaadin.virkki.cdiutils.mvp.View;
+
+/**
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+public interface BenchmarkView extends View {
+    /**
+     * Fires the view open event through the CDI event bus.
+     */
+    void fireOpenEvent();
+}
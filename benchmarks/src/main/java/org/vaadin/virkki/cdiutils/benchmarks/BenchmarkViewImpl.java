@@ -0,0 +1,22 @@
+package org.vaadin.virkki.cdiutils.benchmarks;
+
+import org.vaadin.virkki.cdiutils.mvp.AbstractPresenter;
+import org.vaadin.virkki.cdiutils.mvp.AbstractView;
+
+/**
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+@SuppressWarnings("serial")
+public class BenchmarkViewImpl extends AbstractView implements BenchmarkView {
+    private static final String VIEW_OPEN = BenchmarkView.class.getName()
+            + AbstractPresenter.VIEW_OPEN;
+
+    @Override
+    protected void initView() {
+    }
+
+    @Override
+    public void fireOpenEvent() {
+        fireViewEvent(VIEW_OPEN, this);
+    }
+}
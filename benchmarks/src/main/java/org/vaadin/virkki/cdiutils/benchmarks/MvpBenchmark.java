@@ -0,0 +1,68 @@
+package org.vaadin.virkki.cdiutils.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures opening a view up to the presenter's viewOpened(), both through
+ * AbstractView.openView() (direct dispatch) and through
+ * ViewComponent.fireViewEvent (CDI event bus).
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MvpBenchmark {
+    private StubSession session;
+    private BenchmarkView view;
+    private BenchmarkPresenter presenter;
+
+    @Setup
+    public void setUp() {
+        StubSession.getBeanManager();
+        session = new StubSession();
+        session.activate();
+        session.createUI();
+
+        view = StubSession.getInstance(BenchmarkViewImpl.class);
+        view.openView();
+        presenter = StubSession.getInstance(BenchmarkPresenter.class);
+        view.fireOpenEvent();
+        if (presenter.getOpenCount() != 2) {
+            throw new IllegalStateException(
+                    "The presenter wasn't notified of the view openings");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.deactivate();
+    }
+
+    @Benchmark
+    public int openView() {
+        view.openView();
+        return presenter.getOpenCount();
+    }
+
+    @Benchmark
+    public int fireViewEvent() {
+        view.fireOpenEvent();
+        return presenter.getOpenCount();
+    }
+}
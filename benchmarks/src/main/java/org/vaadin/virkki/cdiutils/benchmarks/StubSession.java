@@ -0,0 +1,216 @@
+package org.vaadin.virkki.cdiutils.benchmarks;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.spi.Context;
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+
+import org.jboss.weld.context.bound.BoundLiteral;
+import org.jboss.weld.context.bound.BoundSessionContext;
+import org.jboss.weld.environment.se.Weld;
+import org.jboss.weld.environment.se.WeldContainer;
+
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.server.WrappedSession;
+import com.vaadin.ui.UI;
+
+/**
+ * A Vaadin session backed by an embedded Weld SE container for running the
+ * CDI Utils hot paths outside of a servlet container. The CDI session context
+ * and the current VaadinSession are bound to the thread that calls
+ * {@link #activate()}.
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+public class StubSession {
+    /**
+     * The views and the UI scope log each access on INFO level
+     */
+    private static final Logger LOGGER = Logger
+            .getLogger("org.vaadin.virkki.cdiutils");
+    private static final AtomicInteger SESSION_IDS = new AtomicInteger();
+
+    private static WeldContainer container;
+
+    private final Map<String, Object> sessionStorage = new ConcurrentHashMap<String, Object>();
+    private final VaadinSession vaadinSession;
+    private BoundSessionContext sessionContext;
+    private int nextUIId;
+
+    public StubSession() {
+        final WrappedSession wrappedSession = new StubWrappedSession("session"
+                + SESSION_IDS.incrementAndGet());
+        vaadinSession = new VaadinSession(null) {
+            @Override
+            public WrappedSession getSession() {
+                return wrappedSession;
+            }
+        };
+    }
+
+    /**
+     * Boots the container once per JVM. The container lives as long as the
+     * forked benchmark JVM.
+     * 
+     * @return
+     */
+    public static synchronized BeanManager getBeanManager() {
+        if (container == null) {
+            LOGGER.setLevel(Level.WARNING);
+            container = new Weld().initialize();
+        }
+        return container.getBeanManager();
+    }
+
+    /**
+     * Binds the CDI session context and the VaadinSession to the current
+     * thread.
+     */
+    public void activate() {
+        sessionContext = container().instance()
+                .select(BoundSessionContext.class, BoundLiteral.INSTANCE)
+                .get();
+        sessionContext.associate(sessionStorage);
+        sessionContext.activate();
+        VaadinSession.setCurrent(vaadinSession);
+    }
+
+    public void deactivate() {
+        UI.setCurrent(null);
+        VaadinSession.setCurrent(null);
+        sessionContext.invalidate();
+        sessionContext.deactivate();
+        sessionContext.dissociate(sessionStorage);
+    }
+
+    /**
+     * Creates a UI attached to the session and makes it the current UI.
+     * 
+     * @return
+     */
+    public UI createUI() {
+        final UI ui = new StubUI();
+        setUIId(ui, nextUIId++);
+        ui.setSession(vaadinSession);
+        UI.setCurrent(ui);
+        return ui;
+    }
+
+    public VaadinSession getVaadinSession() {
+        return vaadinSession;
+    }
+
+    /**
+     * @param type
+     * @return the contextual instance (not a client proxy) of the bean of the
+     *         given type in the current context
+     */
+    public static <T> T getInstance(final Class<T> type) {
+        final BeanManager beanManager = getBeanManager();
+        @SuppressWarnings("unchecked")
+        final Bean<T> bean = (Bean<T>) beanManager.resolve(beanManager
+                .getBeans(type));
+        final Context context = beanManager.getContext(bean.getScope());
+        final CreationalContext<T> creationalContext = beanManager
+                .createCreationalContext(bean);
+        return context.get(bean, creationalContext);
+    }
+
+    private static WeldContainer container() {
+        getBeanManager();
+        return container;
+    }
+
+    private static void setUIId(final UI ui, final int uiId) {
+        try {
+            final Field field = UI.class.getDeclaredField("uiId");
+            field.setAccessible(true);
+            field.setInt(ui, uiId);
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class StubUI extends UI {
+        @Override
+        protected void init(final VaadinRequest request) {
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class StubWrappedSession implements WrappedSession {
+        private final String id;
+        private final Map<String, Object> attributes = new HashMap<String, Object>();
+        private final long creationTime = System.currentTimeMillis();
+
+        StubWrappedSession(final String id) {
+            this.id = id;
+        }
+
+        @Override
+        public int getMaxInactiveInterval() {
+            return 1800;
+        }
+
+        @Override
+        public Object getAttribute(final String name) {
+            return attributes.get(name);
+        }
+
+        @Override
+        public void setAttribute(final String name, final Object value) {
+            attributes.put(name, value);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return Collections.unmodifiableSet(attributes.keySet());
+        }
+
+        @Override
+        public void invalidate() {
+            attributes.clear();
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public long getCreationTime() {
+            return creationTime;
+        }
+
+        @Override
+        public long getLastAccessedTime() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public boolean isNew() {
+            return false;
+        }
+
+        @Override
+        public void removeAttribute(final String name) {
+            attributes.remove(name);
+        }
+
+        @Override
+        public void setMaxInactiveInterval(final int interval) {
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.vaadin.virkki.cdiutils.benchmarks;
+
+import java.io.Serializable;
+
+import org.vaadin.virkki.cdiutils.application.UIContext.UIScoped;
+
+/**
+ * Minimal UI scoped bean.
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+@SuppressWarnings("serial")
+@UIScoped
+public class UIScopedBean implements Serializable {
+}
@@ -0,0 +1,217 @@
+package org.vaadin.virkki.cdiutils.componentproducers;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.virkki.cdiutils.benchmarks.StubSession;
+
+import com.vaadin.ui.AbsoluteLayout;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.CheckBox;
+import com.vaadin.ui.ComboBox;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.CssLayout;
+import com.vaadin.ui.Embedded;
+import com.vaadin.ui.Form;
+import com.vaadin.ui.FormLayout;
+import com.vaadin.ui.GridLayout;
+import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.HorizontalSplitPanel;
+import com.vaadin.ui.InlineDateField;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.Link;
+import com.vaadin.ui.ListSelect;
+import com.vaadin.ui.LoginForm;
+import com.vaadin.ui.MenuBar;
+import com.vaadin.ui.NativeSelect;
+import com.vaadin.ui.OptionGroup;
+import com.vaadin.ui.Panel;
+import com.vaadin.ui.PasswordField;
+import com.vaadin.ui.PopupDateField;
+import com.vaadin.ui.ProgressIndicator;
+import com.vaadin.ui.RichTextArea;
+import com.vaadin.ui.Slider;
+import com.vaadin.ui.TabSheet;
+import com.vaadin.ui.Table;
+import com.vaadin.ui.TextArea;
+import com.vaadin.ui.TextField;
+import com.vaadin.ui.Tree;
+import com.vaadin.ui.TwinColSelect;
+import com.vaadin.ui.Upload;
+import com.vaadin.ui.VerticalLayout;
+import com.vaadin.ui.VerticalSplitPanel;
+
+/**
+ * Measures producing and configuring a @Preconfigured component of each type
+ * produced by {@link ComponentProducers}, including the caption lookup and
+ * the Localizer registration.
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ComponentProducersBenchmark {
+
+    @Param({ "AbsoluteLayout", "Button", "CheckBox", "ComboBox", "CssLayout",
+            "Embedded", "Form", "FormLayout", "GridLayout", "HorizontalLayout",
+            "HorizontalSplitPanel", "InlineDateField", "Label", "Link",
+            "ListSelect", "LoginForm", "MenuBar", "NativeSelect",
+            "OptionGroup", "Panel", "PasswordField", "PopupDateField",
+            "ProgressIndicator", "RichTextArea", "Slider", "Table", "TabSheet",
+            "TextArea", "TextField", "Tree", "TwinColSelect", "Upload",
+            "VerticalLayout", "VerticalSplitPanel" })
+    private String type;
+
+    private StubSession session;
+    private ComponentProducers componentProducers;
+    private Class<? extends Component> componentClass;
+    private Preconfigured preconfigured;
+
+    @Setup
+    public void setUp() throws Exception {
+        StubSession.getBeanManager();
+        session = new StubSession();
+        session.activate();
+        session.createUI();
+        componentProducers = StubSession.getInstance(ComponentProducers.class);
+        componentClass = Class.forName("com.vaadin.ui." + type).asSubclass(
+                Component.class);
+        preconfigured = Declarations.class.getDeclaredField(
+                Character.toLowerCase(type.charAt(0)) + type.substring(1))
+                .getAnnotation(Preconfigured.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.deactivate();
+    }
+
+    @Benchmark
+    public Component produceComponent() {
+        return componentProducers
+                .produceComponent(componentClass, preconfigured);
+    }
+
+    /**
+     * Holds the @Preconfigured declaration of each component type
+     */
+    @SuppressWarnings("unused")
+    private static class Declarations {
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private AbsoluteLayout absoluteLayout;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private Button button;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private CheckBox checkBox;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private ComboBox comboBox;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private CssLayout cssLayout;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private Embedded embedded;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private Form form;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private FormLayout formLayout;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private GridLayout gridLayout;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private HorizontalLayout horizontalLayout;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private HorizontalSplitPanel horizontalSplitPanel;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private InlineDateField inlineDateField;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private Label label;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private Link link;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private ListSelect listSelect;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private LoginForm loginForm;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private MenuBar menuBar;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private NativeSelect nativeSelect;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private OptionGroup optionGroup;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private Panel panel;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private PasswordField passwordField;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private PopupDateField popupDateField;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private ProgressIndicator progressIndicator;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private RichTextArea richTextArea;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private Slider slider;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private Table table;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private TabSheet tabSheet;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private TextArea textArea;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private TextField textField;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private Tree tree;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private TwinColSelect twinColSelect;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private Upload upload;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private VerticalLayout verticalLayout;
+
+        @Preconfigured(captionKey = "caption", styleName = "benchmark", width = 100, immediate = true)
+        private VerticalSplitPanel verticalSplitPanel;
+    }
+}
@@ -0,0 +1,87 @@
+package org.vaadin.virkki.cdiutils.componentproducers;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.virkki.cdiutils.benchmarks.BenchmarkTextBundle;
+import org.vaadin.virkki.cdiutils.benchmarks.StubSession;
+import org.vaadin.virkki.cdiutils.mvp.ParameterDTO;
+
+import com.vaadin.ui.Button;
+import com.vaadin.ui.CssLayout;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.UI;
+
+/**
+ * Measures Localizer.updateCaption with N attached components. Half of the
+ * components are buttons with localized captions, half labels with localized
+ * values, and every tenth component shares its key with others. The texts
+ * change on every update so each component is actually updated.
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LocalizerBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    private int components;
+
+    private StubSession session;
+    private Localizer localizer;
+    private BenchmarkTextBundle textBundle;
+    private final ParameterDTO parameters = new ParameterDTO(null);
+    private boolean toggle;
+
+    @Setup
+    public void setUp() {
+        StubSession.getBeanManager();
+        session = new StubSession();
+        session.activate();
+        final UI ui = session.createUI();
+        final CssLayout layout = new CssLayout();
+        ui.setContent(layout);
+
+        localizer = StubSession.getInstance(Localizer.class);
+        textBundle = StubSession.getInstance(BenchmarkTextBundle.class);
+        for (int i = 0; i < components; i++) {
+            final String key = "key" + (i % 10 == 0 ? 0 : i);
+            if (i % 2 == 0) {
+                final Button button = new Button();
+                layout.addComponent(button);
+                localizer.addLocalizedCaption(button, key);
+            } else {
+                final Label label = new Label();
+                layout.addComponent(label);
+                localizer.addLocalizedLabelValue(label, key);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.deactivate();
+    }
+
+    @Benchmark
+    public void updateCaption() {
+        toggle = !toggle;
+        textBundle.setSuffix(toggle ? "_a" : "_b");
+        localizer.updateCaption(parameters);
+    }
+}
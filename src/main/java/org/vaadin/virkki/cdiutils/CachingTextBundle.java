@@ -0,0 +1,162 @@
+package org.vaadin.virkki.cdiutils;
+
+import java.io.Serializable;
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Base class for {@link TextBundle} implementations which caches the compiled
+ * message templates per locale. Subclasses only provide the current locale
+ * and the raw templates, formatting follows {@link MessageFormat}. A text
+ * requested without parameters is the template itself, it isn't compiled or
+ * formatted.
+ * <p>
+ * The compiled templates are shared by all instances of the same subclass, so
+ * a UI or session scoped bundle doesn't compile and hold its own copies. The
+ * cache of each locale is bounded, it's cleared when full. A cached template
+ * is recompiled if the subclass returns a different template for the key
+ * (e.g. after a reload).
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+@SuppressWarnings("serial")
+public abstract class CachingTextBundle implements TextBundle, Serializable {
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+
+    private static final Map<Class<?>, MessageCache> CACHES = Collections
+            .synchronizedMap(new WeakHashMap<Class<?>, MessageCache>());
+
+    private final int cacheSize;
+    private transient MessageCache cache;
+
+    protected CachingTextBundle() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize
+     *            maximum number of cached templates per locale, the size
+     *            given by the first instance of the subclass is used
+     */
+    protected CachingTextBundle(final int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * @return the locale of the texts
+     */
+    protected abstract Locale getLocale();
+
+    /**
+     * @param key
+     * @param locale
+     * @return the message template of the key or null if not found
+     */
+    protected abstract String getTemplate(String key, Locale locale);
+
+    /**
+     * Override to customize the text of a key without a template.
+     * 
+     * @param key
+     * @param locale
+     * @return
+     */
+    protected String getMissingText(final String key, final Locale locale) {
+        return key;
+    }
+
+    @Override
+    public String getText(final String key, final Object... params) {
+        Locale locale = getLocale();
+        if (locale == null) {
+            locale = Locale.getDefault();
+        }
+        final String template = getTemplate(key, locale);
+        if (template == null) {
+            return getMissingText(key, locale);
+        }
+
+        if (params == null || params.length == 0) {
+            return template;
+        }
+        // The shared format is cloned instead of locked, formatting isn't
+        // thread safe
+        return ((MessageFormat) getCache().get(key, locale, template).format
+                .clone()).format(params);
+    }
+
+    /**
+     * Clears the cached templates of all locales, shared by all instances of
+     * the subclass.
+     */
+    public void clearCache() {
+        getCache().clear();
+    }
+
+    private MessageCache getCache() {
+        if (cache == null) {
+            synchronized (CACHES) {
+                MessageCache shared = CACHES.get(getClass());
+                if (shared == null) {
+                    shared = new MessageCache(cacheSize);
+                    CACHES.put(getClass(), shared);
+                }
+                cache = shared;
+            }
+        }
+        return cache;
+    }
+
+    private static class MessageCache {
+        private final int cacheSize;
+        private final ConcurrentMap<Locale, ConcurrentMap<String, CachedMessage>> locales = new ConcurrentHashMap<Locale, ConcurrentMap<String, CachedMessage>>();
+
+        MessageCache(final int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+
+        CachedMessage get(final String key, final Locale locale,
+                final String template) {
+            ConcurrentMap<String, CachedMessage> messages = locales
+                    .get(locale);
+            if (messages == null) {
+                final ConcurrentMap<String, CachedMessage> newMessages = new ConcurrentHashMap<String, CachedMessage>();
+                messages = locales.putIfAbsent(locale, newMessages);
+                if (messages == null) {
+                    messages = newMessages;
+                }
+            }
+
+            CachedMessage message = messages.get(key);
+            if (message == null
+                    || (message.template != template && !message.template
+                            .equals(template))) {
+                message = new CachedMessage(template, locale);
+                if (messages.size() >= cacheSize) {
+                    messages.clear();
+                }
+                messages.put(key, message);
+            }
+            return message;
+        }
+
+        void clear() {
+            locales.clear();
+        }
+    }
+
+    private static class CachedMessage {
+        private final String template;
+        private final MessageFormat format;
+
+        CachedMessage(final String template, final Locale locale) {
+            this.template = template;
+            format = new MessageFormat(template, locale);
+        }
+    }
+}
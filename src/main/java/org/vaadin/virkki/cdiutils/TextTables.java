@@ -0,0 +1,199 @@
+package org.vaadin.virkki.cdiutils;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Application wide, read-only text tables loaded from property resource
+ * bundles. Each locale is loaded once into an array indexed by key index
+ * and shared by all sessions and UIs. Meant to be held in a static field or
+ * an application scoped bean and used as the template source of a
+ * {@link CachingTextBundle}:
+ * 
+ * <pre>
+ * &#064;UIScoped
+ * public class AppTextBundle extends CachingTextBundle {
+ *     private static final TextTables TABLES = new TextTables(&quot;com.example.texts&quot;);
+ * 
+ *     &#064;Override
+ *     protected Locale getLocale() {
+ *         return UI.getCurrent().getLocale();
+ *     }
+ * 
+ *     &#064;Override
+ *     protected String getTemplate(final String key, final Locale locale) {
+ *         return TABLES.getTemplate(key, locale);
+ *     }
+ * }
+ * </pre>
+ * 
+ * The templates compiled by such a bundle are shared by all its instances as
+ * well, so a UI scoped bundle doesn't duplicate them per UI.
+ * <p>
+ * {@link #reload()} reloads the bundles and swaps the tables atomically,
+ * readers never see a partially loaded table. The bundles are read past the
+ * ResourceBundle cache, so reloading doesn't affect other bundles of the
+ * class loader.
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+public class TextTables {
+    private static final String[] EMPTY_TABLE = new String[0];
+
+    /**
+     * Reads the bundle resources on each load. The tables are the cache.
+     */
+    private static final ResourceBundle.Control UNCACHED = new ResourceBundle.Control() {
+        @Override
+        public long getTimeToLive(final String baseName, final Locale locale) {
+            return TTL_DONT_CACHE;
+        }
+
+        @Override
+        public ResourceBundle newBundle(final String baseName,
+                final Locale locale, final String format,
+                final ClassLoader loader, final boolean reload)
+                throws IllegalAccessException, InstantiationException,
+                IOException {
+            // Bypasses URL caches too
+            return super.newBundle(baseName, locale, format, loader, true);
+        }
+    };
+
+    private final String baseName;
+    private final ClassLoader classLoader;
+
+    private final ConcurrentMap<String, Integer> keyIndexes = new ConcurrentHashMap<String, Integer>();
+    private final AtomicInteger keyCount = new AtomicInteger();
+
+    private final AtomicReference<Map<Locale, String[]>> tables = new AtomicReference<Map<Locale, String[]>>(
+            Collections.<Locale, String[]> emptyMap());
+
+    /**
+     * @param baseName
+     *            base name of the resource bundles
+     */
+    public TextTables(final String baseName) {
+        this(baseName, Thread.currentThread().getContextClassLoader());
+    }
+
+    public TextTables(final String baseName, final ClassLoader classLoader) {
+        this.baseName = baseName;
+        this.classLoader = classLoader != null ? classLoader : TextTables.class
+                .getClassLoader();
+    }
+
+    /**
+     * @param key
+     * @param locale
+     * @return the template of the key in the locale or null if not found
+     */
+    public String getTemplate(final String key, final Locale locale) {
+        final Integer keyIndex = keyIndexes.get(key);
+        if (keyIndex == null) {
+            // Keys are indexed when the first locale is loaded
+            getTable(locale);
+            return getTemplate(keyIndexes.get(key), locale);
+        }
+        return getTemplate(keyIndex, locale);
+    }
+
+    /**
+     * Returns the template by a key index obtained with
+     * {@link #getKeyIndex(String)}, skipping the key lookup.
+     * 
+     * @param keyIndex
+     * @param locale
+     * @return the template or null if not found
+     */
+    public String getTemplate(final Integer keyIndex, final Locale locale) {
+        if (keyIndex == null) {
+            return null;
+        }
+        final String[] table = getTable(locale);
+        return keyIndex < table.length ? table[keyIndex] : null;
+    }
+
+    /**
+     * @param key
+     * @return the index of the key, assigned on first use
+     */
+    public int getKeyIndex(final String key) {
+        Integer keyIndex = keyIndexes.get(key);
+        if (keyIndex == null) {
+            final Integer newIndex = keyCount.getAndIncrement();
+            keyIndex = keyIndexes.putIfAbsent(key.intern(), newIndex);
+            if (keyIndex == null) {
+                keyIndex = newIndex;
+            }
+        }
+        return keyIndex;
+    }
+
+    /**
+     * Reloads the tables of all the loaded locales and replaces them at once.
+     */
+    public void reload() {
+        synchronized (this) {
+            final Map<Locale, String[]> reloaded = new HashMap<Locale, String[]>();
+            for (final Locale locale : tables.get().keySet()) {
+                reloaded.put(locale, load(locale));
+            }
+            tables.set(Collections.unmodifiableMap(reloaded));
+        }
+    }
+
+    private String[] getTable(final Locale locale) {
+        String[] table = tables.get().get(locale);
+        if (table == null) {
+            synchronized (this) {
+                final Map<Locale, String[]> current = tables.get();
+                table = current.get(locale);
+                if (table == null) {
+                    table = load(locale);
+                    final Map<Locale, String[]> updated = new HashMap<Locale, String[]>(
+                            current);
+                    updated.put(locale, table);
+                    tables.set(Collections.unmodifiableMap(updated));
+                }
+            }
+        }
+        return table;
+    }
+
+    private String[] load(final Locale locale) {
+        final ResourceBundle bundle;
+        try {
+            bundle = ResourceBundle.getBundle(baseName, locale, classLoader,
+                    UNCACHED);
+        } catch (final MissingResourceException e) {
+            return EMPTY_TABLE;
+        }
+
+        final Map<Integer, String> templates = new HashMap<Integer, String>();
+        int size = 0;
+        for (final Enumeration<String> keys = bundle.getKeys(); keys
+                .hasMoreElements();) {
+            final String key = keys.nextElement();
+            final int keyIndex = getKeyIndex(key);
+            templates.put(keyIndex, bundle.getString(key));
+            size = Math.max(size, keyIndex + 1);
+        }
+
+        final String[] table = new String[size];
+        for (final Map.Entry<Integer, String> entry : templates.entrySet()) {
+            table[entry.getKey()] = entry.getValue();
+        }
+        return table;
+    }
+}
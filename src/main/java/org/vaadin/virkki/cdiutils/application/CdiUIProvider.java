@@ -12,6 +12,7 @@ import com.vaadin.server.ClientConnector.DetachEvent;
 import com.vaadin.server.ClientConnector.DetachListener;
 import com.vaadin.server.DefaultUIProvider;
 import com.vaadin.server.UICreateEvent;
+import com.vaadin.server.VaadinSession;
 import com.vaadin.ui.UI;
 import com.vaadin.util.CurrentInstance;
 
@@ -46,13 +47,13 @@ public class CdiUIProvider extends DefaultUIProvider {
             @Override
             public void detach(final DetachEvent event) {
                 try {
-                    final Bean<?> containerBean = beanManager
-                            .getBeans(BeanStoreContainer.class).iterator()
-                            .next();
-                    final BeanStoreContainer beanStoreContainer = (BeanStoreContainer) beanManager
-                            .getReference(containerBean, containerBean
-                                    .getBeanClass(), beanManager
-                                    .createCreationalContext(containerBean));
+                    // Same lookup as UIContext so that the detach reaches the
+                    // container the UI's beans are stored in
+                    final VaadinSession session = ui.getSession() != null ? ui
+                            .getSession() : VaadinSession.getCurrent();
+                    final BeanStoreContainer beanStoreContainer = UIContext
+                            .getBeanStoreContainer(session, beanManager,
+                                    UIContext.getContainerBean(beanManager));
                     beanStoreContainer.uiDetached(ui.getUIId());
                 } catch (final ContextNotActiveException exception) {
                     // Ignore, if a session has been invalidated, all the UI
@@ -63,6 +64,25 @@ public class CdiUIProvider extends DefaultUIProvider {
 
         CurrentInstance.set(UICreateEvent.class, null);
 
+        evictInactiveUIs(event.getUiId());
+
         return ui;
     }
+
+    /**
+     * Applies the {@link UIEvictionPolicy} to the other UIs of the session.
+     * UIs are created while the session is locked, so closing other UIs is
+     * safe here. Skipped if there's no current session.
+     * 
+     * @param uiId
+     *            id of the created UI
+     */
+    private void evictInactiveUIs(final int uiId) {
+        final VaadinSession session = VaadinSession.getCurrent();
+        if (session != null && UIEvictionPolicy.getInstance().isEnabled()) {
+            UIContext.getBeanStoreContainer(session, beanManager,
+                    UIContext.getContainerBean(beanManager)).evict(session,
+                    uiId);
+        }
+    }
 }
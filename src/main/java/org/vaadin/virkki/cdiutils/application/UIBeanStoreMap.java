@@ -0,0 +1,129 @@
+package org.vaadin.virkki.cdiutils.application;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.vaadin.virkki.cdiutils.application.UIContext.UIBeanStore;
+
+/**
+ * Map of UI ids to UI bean stores with primitive int keys. The table is an
+ * open addressing hash table which is replaced on each modification, so
+ * lookups are lock free and usually cost a single probe. Modifications only
+ * happen when UIs are created or removed.
+ *
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+@SuppressWarnings("serial")
+class UIBeanStoreMap implements Serializable {
+    private static final int MIN_CAPACITY = 4;
+
+    private volatile Table table = new Table(MIN_CAPACITY);
+
+    public UIBeanStore get(final int uiId) {
+        return table.get(uiId);
+    }
+
+    /**
+     * Associates the bean store with the given UI id unless a store has
+     * already been associated with it.
+     *
+     * @return the previously associated store or null if there was none
+     */
+    public synchronized UIBeanStore putIfAbsent(final int uiId,
+            final UIBeanStore beanStore) {
+        final Table current = table;
+        final UIBeanStore existing = current.get(uiId);
+        if (existing == null) {
+            final Table newTable = new Table(capacityFor(current.size + 1));
+            current.copyTo(newTable, uiId);
+            newTable.put(uiId, beanStore);
+            table = newTable;
+        }
+        return existing;
+    }
+
+    /**
+     * @return the removed store or null if none was associated with the id
+     */
+    public synchronized UIBeanStore remove(final int uiId) {
+        final Table current = table;
+        final UIBeanStore existing = current.get(uiId);
+        if (existing != null) {
+            final Table newTable = new Table(capacityFor(current.size - 1));
+            current.copyTo(newTable, uiId);
+            table = newTable;
+        }
+        return existing;
+    }
+
+    public List<UIBeanStore> values() {
+        final Table current = table;
+        final List<UIBeanStore> values = new ArrayList<UIBeanStore>(
+                current.size);
+        for (final UIBeanStore value : current.values) {
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    public int size() {
+        return table.size;
+    }
+
+    private static int capacityFor(final int size) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Effectively immutable hash table. Only modified before it's published.
+     */
+    private static class Table implements Serializable {
+        private final int[] keys;
+        private final UIBeanStore[] values;
+        private final int mask;
+        private int size;
+
+        Table(final int capacity) {
+            keys = new int[capacity];
+            values = new UIBeanStore[capacity];
+            mask = capacity - 1;
+        }
+
+        UIBeanStore get(final int key) {
+            int index = key & mask;
+            UIBeanStore value;
+            while ((value = values[index]) != null) {
+                if (keys[index] == key) {
+                    return value;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        void put(final int key, final UIBeanStore value) {
+            int index = key & mask;
+            while (values[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            values[index] = value;
+            size++;
+        }
+
+        void copyTo(final Table target, final int excludedKey) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null && keys[i] != excludedKey) {
+                    target.put(keys[i], values[i]);
+                }
+            }
+        }
+    }
+}
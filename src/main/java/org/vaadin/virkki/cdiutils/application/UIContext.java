@@ -1,5 +1,8 @@
 package org.vaadin.virkki.cdiutils.application;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
 import java.lang.annotation.ElementType;
@@ -7,9 +10,14 @@ import java.lang.annotation.Inherited;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import javax.annotation.PreDestroy;
@@ -18,16 +26,22 @@ import javax.enterprise.context.spi.Context;
 import javax.enterprise.context.spi.Contextual;
 import javax.enterprise.context.spi.CreationalContext;
 import javax.enterprise.event.Observes;
+import javax.enterprise.inject.Any;
 import javax.enterprise.inject.spi.AfterBeanDiscovery;
+import javax.enterprise.inject.spi.AfterDeploymentValidation;
 import javax.enterprise.inject.spi.Bean;
 import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.BeforeShutdown;
 import javax.enterprise.inject.spi.Extension;
+import javax.enterprise.inject.spi.PassivationCapable;
+import javax.enterprise.util.AnnotationLiteral;
 import javax.inject.Inject;
 import javax.inject.Scope;
 
 import org.vaadin.virkki.cdiutils.componentproducers.Preconfigured;
 
 import com.vaadin.server.UICreateEvent;
+import com.vaadin.server.VaadinSession;
 import com.vaadin.ui.UI;
 import com.vaadin.util.CurrentInstance;
 
@@ -37,11 +51,143 @@ import com.vaadin.util.CurrentInstance;
  * @author Tomi Virkki / Vaadin Ltd
  */
 public class UIContext implements Extension {
+    private UIContextImpl uiContext;
+    private final List<UIContextListener> listeners = new ArrayList<UIContextListener>();
 
     void afterBeanDiscovery(
             @Observes final AfterBeanDiscovery afterBeanDiscovery,
             final BeanManager beanManager) {
-        afterBeanDiscovery.addContext(new UIContextImpl(beanManager));
+        uiContext = new UIContextImpl(beanManager);
+        afterBeanDiscovery.addContext(uiContext);
+    }
+
+    /**
+     * Assigns a bean store slot for each UIScoped bean (the set of UIScoped
+     * beans is fixed after deployment validation), registers the metrics
+     * MBean and UIContextListener beans.
+     * 
+     * @param afterDeploymentValidation
+     * @param beanManager
+     */
+    @SuppressWarnings("serial")
+    void afterDeploymentValidation(
+            @Observes final AfterDeploymentValidation afterDeploymentValidation,
+            final BeanManager beanManager) {
+        final Map<Contextual<?>, Integer> slots = new IdentityHashMap<Contextual<?>, Integer>();
+        for (final Bean<?> bean : beanManager.getBeans(Object.class,
+                new AnnotationLiteral<Any>() {
+                })) {
+            if (UIScoped.class.equals(bean.getScope())) {
+                slots.put(bean, slots.size());
+            }
+        }
+        uiContext.beanSlots = new BeanSlots(slots);
+
+        final UIContextMetrics metrics = UIContextMetrics.getInstance();
+        metrics.registerMBean();
+        for (final Bean<?> bean : beanManager.getBeans(
+                UIContextListener.class, new AnnotationLiteral<Any>() {
+                })) {
+            final UIContextListener listener = (UIContextListener) beanManager
+                    .getReference(bean, UIContextListener.class,
+                            beanManager.createCreationalContext(bean));
+            metrics.addListener(listener);
+            listeners.add(listener);
+        }
+    }
+
+    void beforeShutdown(@Observes final BeforeShutdown beforeShutdown) {
+        final UIContextMetrics metrics = UIContextMetrics.getInstance();
+        for (final UIContextListener listener : listeners) {
+            metrics.removeListener(listener);
+        }
+        listeners.clear();
+        metrics.unregisterMBean();
+    }
+
+    /**
+     * Resolves the bean of the session scoped BeanStoreContainer.
+     * 
+     * @param beanManager
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    static Bean<BeanStoreContainer> getContainerBean(
+            final BeanManager beanManager) {
+        return (Bean<BeanStoreContainer>) beanManager.resolve(beanManager
+                .getBeans(BeanStoreContainer.class));
+    }
+
+    /**
+     * Returns the BeanStoreContainer instance of the session. The instance is
+     * looked up from the session context instead of using a client proxy
+     * which would go through the context on each call. It's bound to the
+     * VaadinSession so that subsequent lookups don't need to go through the
+     * BeanManager at all. The binding is discarded if the VaadinSession has
+     * moved to another HTTP session (e.g. VaadinService.reinitializeSession)
+     * or the container has been destroyed along with its CDI session context.
+     * 
+     * @param session
+     *            the VaadinSession or null if none
+     * @param beanManager
+     * @param containerBean
+     *            the bean of the container
+     * @return
+     */
+    static BeanStoreContainer getBeanStoreContainer(
+            final VaadinSession session, final BeanManager beanManager,
+            final Bean<BeanStoreContainer> containerBean) {
+        final String sessionId = getSessionId(session);
+        if (sessionId != null) {
+            final BeanStoreContainerHolder holder = session
+                    .getAttribute(BeanStoreContainerHolder.class);
+            if (holder != null && holder.isValid(sessionId)) {
+                return holder.container;
+            }
+        }
+
+        final BeanStoreContainer container = beanManager.getContext(
+                containerBean.getScope()).get(containerBean,
+                beanManager.createCreationalContext(containerBean));
+        if (sessionId != null) {
+            session.setAttribute(BeanStoreContainerHolder.class,
+                    new BeanStoreContainerHolder(container, sessionId));
+        }
+        return container;
+    }
+
+    private static String getSessionId(final VaadinSession session) {
+        if (session == null || session.getSession() == null) {
+            return null;
+        }
+        try {
+            return session.getSession().getId();
+        } catch (final IllegalStateException e) {
+            // Invalidated
+            return null;
+        }
+    }
+
+    /**
+     * Immutable mapping of UIScoped beans to their bean store slots. Beans are
+     * compared by identity so no Bean.hashCode/equals calls are needed.
+     * 
+     * @author Tomi Virkki / Vaadin Ltd
+     */
+    static class BeanSlots {
+        private final Map<Contextual<?>, Integer> slots;
+
+        BeanSlots(final Map<Contextual<?>, Integer> slots) {
+            this.slots = slots;
+        }
+
+        /**
+         * @return the slot of the contextual or -1 if none was assigned
+         */
+        int getSlot(final Contextual<?> contextual) {
+            final Integer slot = slots.get(contextual);
+            return slot != null ? slot : -1;
+        }
     }
 
     /**
@@ -53,26 +199,45 @@ public class UIContext implements Extension {
     private static class UIContextImpl implements Context {
 
         private final BeanManager beanManager;
+        private volatile Bean<BeanStoreContainer> containerBean;
+        private volatile BeanSlots beanSlots = new BeanSlots(
+                Collections.<Contextual<?>, Integer> emptyMap());
 
         public UIContextImpl(final BeanManager beanManager) {
             this.beanManager = beanManager;
         }
 
-        private UIBeanStore getCurrentBeanStore() {
-            final Bean<?> bean = beanManager.getBeans(BeanStoreContainer.class)
-                    .iterator().next();
-            final BeanStoreContainer container = (BeanStoreContainer) beanManager
-                    .getReference(bean, bean.getBeanClass(),
-                            beanManager.createCreationalContext(bean));
+        /**
+         * Resolves the bean of the session scoped BeanStoreContainer. The bean
+         * is independent of the active session so it only needs to be looked
+         * up once.
+         */
+        private Bean<BeanStoreContainer> getContainerBean() {
+            Bean<BeanStoreContainer> bean = containerBean;
+            if (bean == null) {
+                bean = UIContext.getContainerBean(beanManager);
+                containerBean = bean;
+            }
+            return bean;
+        }
 
+        private BeanStoreContainer getBeanStoreContainer() {
+            return UIContext.getBeanStoreContainer(
+                    VaadinSession.getCurrent(), beanManager,
+                    getContainerBean());
+        }
+
+        private UIBeanStore getCurrentBeanStore() {
+            final UICreateEvent createEvent = CurrentInstance
+                    .get(UICreateEvent.class);
             final int uiId;
-            if (CurrentInstance.get(UICreateEvent.class) != null) {
-                uiId = CurrentInstance.get(UICreateEvent.class).getUiId();
+            if (createEvent != null) {
+                uiId = createEvent.getUiId();
             } else {
                 uiId = UI.getCurrent().getUIId();
             }
 
-            return container.getBeanStore(uiId);
+            return getBeanStoreContainer().getBeanStore(uiId);
         }
 
         @Override
@@ -83,7 +248,8 @@ public class UIContext implements Extension {
         @Override
         public <T> T get(final Contextual<T> contextual,
                 final CreationalContext<T> creationalContext) {
-            return getCurrentBeanStore().getBeanInstance((Bean<T>) contextual,
+            return getCurrentBeanStore().getBeanInstance(
+                    beanSlots.getSlot(contextual), (Bean<T>) contextual,
                     creationalContext);
         }
 
@@ -99,55 +265,400 @@ public class UIContext implements Extension {
     }
 
     /**
-     * Datastructure for storing contextual bean instances.
+     * Datastructure for storing contextual bean instances. Instances of beans
+     * with an assigned {@link BeanSlots slot} are stored in an array indexed
+     * by the slot, others in a map keyed by the bean. Lookups are lock free,
+     * bean instantiation is serialized per UI to guarantee that each bean is
+     * only created once even if the UI is accessed concurrently.
+     * <p>
+     * When serialized, only the ids of passivation capable beans and their
+     * instances are written. The instances are restored to the store lazily
+     * on first access after deserialization (see
+     * {@link #activate(BeanManager)}).
+     * <p>
+     * The stores of inactive UIs are deliberately not spilled out of the heap.
+     * Restored copies would diverge from the instances still referenced by
+     * the components and listeners of the UI. Memory is bounded by evicting
+     * abandoned UIs instead (see {@link UIEvictionPolicy}).
      * 
      * @author Tomi Virkki / Vaadin Ltd
      */
-    static class UIBeanStore {
-        private final Map<Bean<?>, ContextualInstance<?>> instances = new HashMap<Bean<?>, ContextualInstance<?>>();
+    @SuppressWarnings("serial")
+    static class UIBeanStore implements Serializable {
+        private final int uiId;
+        private transient ConcurrentMap<Bean<?>, ContextualInstance<?>> instances = new ConcurrentHashMap<Bean<?>, ContextualInstance<?>>();
+        private transient volatile ContextualInstance<?>[] slots = new ContextualInstance<?>[0];
+        private transient volatile List<PassivatedInstance> passivatedInstances;
+        /**
+         * True once the store has been used in this JVM, changed while holding
+         * the store lock
+         */
+        private transient volatile boolean inUse;
+        private transient boolean restored;
+
+        private volatile long lastAccessed = System.currentTimeMillis();
+
+        UIBeanStore(final int uiId) {
+            this.uiId = uiId;
+        }
+
+        public int getUIId() {
+            return uiId;
+        }
+
+        public long getLastAccessed() {
+            return lastAccessed;
+        }
+
+        boolean isInUse() {
+            return inUse;
+        }
+
+        /**
+         * Reports the store to UIContextMetrics when it's first used in this
+         * JVM, either after creation or after deserialization.
+         */
+        void markInUse() {
+            final boolean wasRestored;
+            final int beanCount;
+            synchronized (this) {
+                if (inUse) {
+                    return;
+                }
+                inUse = true;
+                wasRestored = restored;
+                beanCount = getBeanCount();
+            }
+            if (wasRestored) {
+                UIContextMetrics.getInstance().beanStoreRestored(this,
+                        beanCount);
+            } else {
+                UIContextMetrics.getInstance().beanStoreCreated(this);
+            }
+        }
+
+        /**
+         * @return the number of bean instances in the store, including
+         *         passivated ones
+         */
+        int getBeanCount() {
+            int count = instances.size();
+            for (final ContextualInstance<?> contextualInstance : slots) {
+                if (contextualInstance != null) {
+                    count++;
+                }
+            }
+            if (passivatedInstances != null) {
+                count += passivatedInstances.size();
+            }
+            return count;
+        }
+
+        /**
+         * Updates the last access time. The time is only stored with a one
+         * second precision to avoid a volatile write on each access.
+         * 
+         * @param now
+         */
+        void touch(final long now) {
+            if (now - lastAccessed > 1000L) {
+                lastAccessed = now;
+            }
+        }
+
+        private ContextualInstance<?> getContextualInstance(final int slot,
+                final Bean<?> bean) {
+            if (slot < 0) {
+                return instances.get(bean);
+            }
+            final ContextualInstance<?>[] currentSlots = slots;
+            return slot < currentSlots.length ? currentSlots[slot] : null;
+        }
 
         @SuppressWarnings("unchecked")
-        protected <T> T getBeanInstance(final Bean<T> bean,
+        protected <T> T getBeanInstance(final int slot, final Bean<T> bean,
                 final CreationalContext<T> creationalContext) {
-            ContextualInstance<T> contextualInstance = (ContextualInstance<T>) instances
-                    .get(bean);
+            ContextualInstance<T> contextualInstance = (ContextualInstance<T>) getContextualInstance(
+                    slot, bean);
+            if (contextualInstance == null && slot >= 0 && !instances.isEmpty()) {
+                contextualInstance = (ContextualInstance<T>) moveToSlot(slot,
+                        bean);
+            }
             if (contextualInstance == null && creationalContext != null) {
-                contextualInstance = new ContextualInstance<T>(
-                        bean.create(creationalContext), creationalContext);
-                instances.put(bean, contextualInstance);
+                boolean created = false;
+                synchronized (this) {
+                    contextualInstance = (ContextualInstance<T>) getContextualInstance(
+                            slot, bean);
+                    if (contextualInstance == null) {
+                        contextualInstance = new ContextualInstance<T>(bean,
+                                bean.create(creationalContext),
+                                creationalContext);
+                        if (slot < 0) {
+                            instances.put(bean, contextualInstance);
+                        } else {
+                            setSlot(slot, contextualInstance);
+                        }
+                        created = true;
+                    }
+                }
+                if (created) {
+                    UIContextMetrics.getInstance().beanCreated(uiId, bean);
+                }
             }
             return contextualInstance != null ? contextualInstance
                     .getInstance() : null;
         }
 
-        public void dereferenceAllBeanInstances() {
-            for (final Bean<?> bean : new HashSet<Bean<?>>(instances.keySet())) {
-                dereferenceBeanInstance(bean);
+        /**
+         * Moves an instance restored after deserialization from the map to its
+         * slot.
+         */
+        private synchronized ContextualInstance<?> moveToSlot(final int slot,
+                final Bean<?> bean) {
+            final ContextualInstance<?> contextualInstance = instances
+                    .remove(bean);
+            if (contextualInstance != null) {
+                setSlot(slot, contextualInstance);
             }
+            return contextualInstance;
         }
 
-        public <T> void dereferenceBeanInstance(final Bean<T> bean) {
-            @SuppressWarnings("unchecked")
-            final ContextualInstance<T> contextualInstance = (ContextualInstance<T>) instances
-                    .get(bean);
+        /**
+         * Must be called while holding the store lock. The slot array is
+         * republished after each modification.
+         */
+        private void setSlot(final int slot,
+                final ContextualInstance<?> contextualInstance) {
+            ContextualInstance<?>[] newSlots = slots;
+            if (slot >= newSlots.length) {
+                newSlots = Arrays.copyOf(newSlots, slot + 1);
+            }
+            newSlots[slot] = contextualInstance;
+            slots = newSlots;
+        }
+
+        /**
+         * @return the number of dereferenced bean instances
+         */
+        public int dereferenceAllBeanInstances() {
+            int count = 0;
+            for (final Bean<?> bean : instances.keySet()) {
+                if (dereferenceBeanInstance(bean)) {
+                    count++;
+                }
+            }
+            for (final ContextualInstance<?> contextualInstance : slots) {
+                if (contextualInstance != null
+                        && dereferenceBeanInstance(contextualInstance
+                                .getBean())) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Dereferences all the bean instances of the store. The store must
+         * not be used after this.
+         */
+        public void destroy() {
+            final int count = dereferenceAllBeanInstances();
+            UIContextMetrics.getInstance().beanStoreDestroyed(this, count);
+        }
+
+        /**
+         * @return true if an instance of the bean was dereferenced
+         */
+        public <T> boolean dereferenceBeanInstance(final Bean<T> bean) {
+            final ContextualInstance<T> contextualInstance;
+            synchronized (this) {
+                contextualInstance = remove(bean);
+            }
             if (contextualInstance != null) {
                 bean.destroy(contextualInstance.getInstance(),
                         contextualInstance.getCreationalContext());
-                instances.remove(bean);
+                UIContextMetrics.getInstance().beanDestroyed(uiId, bean);
+                return true;
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> ContextualInstance<T> remove(final Bean<T> bean) {
+            final ContextualInstance<T> contextualInstance = (ContextualInstance<T>) instances
+                    .remove(bean);
+            return contextualInstance != null ? contextualInstance
+                    : removeSlot(bean);
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized <T> ContextualInstance<T> removeSlot(
+                final Bean<T> bean) {
+            final ContextualInstance<?>[] currentSlots = slots;
+            for (int i = 0; i < currentSlots.length; i++) {
+                if (currentSlots[i] != null
+                        && currentSlots[i].getBean().equals(bean)) {
+                    final ContextualInstance<?> contextualInstance = currentSlots[i];
+                    setSlot(i, null);
+                    return (ContextualInstance<T>) contextualInstance;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return true if the store has been deserialized but not yet
+         *         activated
+         */
+        boolean isPassivated() {
+            return passivatedInstances != null;
+        }
+
+        private List<ContextualInstance<?>> getContextualInstances() {
+            final List<ContextualInstance<?>> contextualInstances = new ArrayList<ContextualInstance<?>>(
+                    instances.values());
+            for (final ContextualInstance<?> contextualInstance : slots) {
+                if (contextualInstance != null) {
+                    contextualInstances.add(contextualInstance);
+                }
+            }
+            return contextualInstances;
+        }
+
+        private boolean isPassivationCapable(
+                final ContextualInstance<?> contextualInstance) {
+            return contextualInstance.getBean() instanceof PassivationCapable
+                    && contextualInstance.getInstance() instanceof Serializable;
+        }
+
+        private PassivatedInstance toPassivated(
+                final ContextualInstance<?> contextualInstance) {
+            final CreationalContext<?> creationalContext = contextualInstance
+                    .getCreationalContext();
+            return new PassivatedInstance(
+                    ((PassivationCapable) contextualInstance.getBean()).getId(),
+                    contextualInstance.getInstance(),
+                    creationalContext instanceof Serializable ? creationalContext
+                            : null);
+        }
+
+        private static void writePassivated(final ObjectOutputStream out,
+                final PassivatedInstance passivatedInstance)
+                throws IOException {
+            out.writeUTF(passivatedInstance.id);
+            out.writeObject(passivatedInstance.instance);
+            out.writeObject(passivatedInstance.creationalContext);
+        }
+
+        private static List<PassivatedInstance> readPassivated(
+                final ObjectInputStream in) throws IOException,
+                ClassNotFoundException {
+            final int size = in.readInt();
+            final List<PassivatedInstance> passivated = new ArrayList<PassivatedInstance>(
+                    size);
+            for (int i = 0; i < size; i++) {
+                passivated.add(new PassivatedInstance(in.readUTF(), in
+                        .readObject(), (CreationalContext<?>) in.readObject()));
+            }
+            return passivated;
+        }
+
+        /**
+         * Restores the instances of a deserialized store.
+         * 
+         * @param beanManager
+         */
+        synchronized void activate(final BeanManager beanManager) {
+            final List<PassivatedInstance> passivated = passivatedInstances;
+            if (passivated == null) {
+                return;
+            }
+            for (final PassivatedInstance passivatedInstance : passivated) {
+                final Bean<?> bean = beanManager
+                        .getPassivationCapableBean(passivatedInstance.id);
+                if (bean != null) {
+                    restore(bean, passivatedInstance, beanManager);
+                }
+            }
+            passivatedInstances = null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> void restore(final Bean<T> bean,
+                final PassivatedInstance passivatedInstance,
+                final BeanManager beanManager) {
+            CreationalContext<T> creationalContext = (CreationalContext<T>) passivatedInstance.creationalContext;
+            if (creationalContext == null) {
+                creationalContext = beanManager.createCreationalContext(bean);
+            }
+            instances.put(bean, new ContextualInstance<T>(bean,
+                    (T) passivatedInstance.instance, creationalContext));
+        }
+
+        private synchronized void writeObject(final ObjectOutputStream out)
+                throws IOException {
+            out.defaultWriteObject();
+
+            final List<PassivatedInstance> passivated = new ArrayList<PassivatedInstance>();
+            if (passivatedInstances != null) {
+                passivated.addAll(passivatedInstances);
+            }
+            for (final ContextualInstance<?> contextualInstance : getContextualInstances()) {
+                if (isPassivationCapable(contextualInstance)) {
+                    passivated.add(toPassivated(contextualInstance));
+                }
+            }
+
+            out.writeInt(passivated.size());
+            for (final PassivatedInstance passivatedInstance : passivated) {
+                writePassivated(out, passivatedInstance);
+            }
+        }
+
+        private void readObject(final ObjectInputStream in)
+                throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            restored = true;
+            instances = new ConcurrentHashMap<Bean<?>, ContextualInstance<?>>();
+            slots = new ContextualInstance<?>[0];
+
+            final List<PassivatedInstance> passivated = readPassivated(in);
+            passivatedInstances = passivated.isEmpty() ? null : passivated;
+        }
+
+        /**
+         * Compact form of a bean instance of a deserialized store.
+         */
+        private static class PassivatedInstance {
+            private final String id;
+            private final Object instance;
+            private final CreationalContext<?> creationalContext;
+
+            PassivatedInstance(final String id, final Object instance,
+                    final CreationalContext<?> creationalContext) {
+                this.id = id;
+                this.instance = instance;
+                this.creationalContext = creationalContext;
             }
         }
 
         class ContextualInstance<T> {
+            private final Bean<T> bean;
             private final T instance;
             private final CreationalContext<T> creationalContext;
 
-            public ContextualInstance(final T instance,
+            public ContextualInstance(final Bean<T> bean, final T instance,
                     final CreationalContext<T> creationalContext) {
                 super();
+                this.bean = bean;
                 this.instance = instance;
                 this.creationalContext = creationalContext;
             }
 
+            public Bean<T> getBean() {
+                return bean;
+            }
+
             public T getInstance() {
                 return instance;
             }
@@ -158,6 +669,31 @@ public class UIContext implements Extension {
         }
     }
 
+    /**
+     * VaadinSession attribute pointing to the BeanStoreContainer instance of
+     * the session. The reference is transient as the container is serialized
+     * along with the CDI session context. The id of the HTTP session the
+     * container belongs to is recorded for detecting session changes.
+     * 
+     * @author Tomi Virkki / Vaadin Ltd
+     */
+    @SuppressWarnings("serial")
+    static class BeanStoreContainerHolder implements Serializable {
+        private final transient BeanStoreContainer container;
+        private final String sessionId;
+
+        BeanStoreContainerHolder(final BeanStoreContainer container,
+                final String sessionId) {
+            this.container = container;
+            this.sessionId = sessionId;
+        }
+
+        boolean isValid(final String currentSessionId) {
+            return container != null && !container.isDestroyed()
+                    && sessionId.equals(currentSessionId);
+        }
+    }
+
     @SuppressWarnings("serial")
     @SessionScoped
     static class BeanStoreContainer implements Serializable {
@@ -165,27 +701,124 @@ public class UIContext implements Extension {
         @Preconfigured
         protected transient Logger logger;
 
-        private final Map<Integer, UIBeanStore> beanStores = new HashMap<Integer, UIBeanStore>();
+        @Inject
+        private BeanManager beanManager;
+
+        private final UIBeanStoreMap beanStores = new UIBeanStoreMap();
+        private transient volatile boolean destroyed;
+        /**
+         * True once the session has been reported to UIContextMetrics in this
+         * JVM
+         */
+        private transient volatile boolean inUse;
 
         public UIBeanStore getBeanStore(final int uiId) {
-            if (!beanStores.containsKey(uiId)) {
-                beanStores.put(uiId, new UIBeanStore());
+            if (!inUse) {
+                markInUse();
+            }
+            UIBeanStore beanStore = beanStores.get(uiId);
+            if (beanStore == null) {
+                final UIBeanStore newBeanStore = new UIBeanStore(uiId);
+                beanStore = beanStores.putIfAbsent(uiId, newBeanStore);
+                if (beanStore == null) {
+                    beanStore = newBeanStore;
+                    UIContextMetrics.getInstance().beanStoreAdded(
+                            beanStores.size());
+                }
+            }
+            if (!beanStore.isInUse()) {
+                beanStore.markInUse();
+            }
+
+            if (beanStore.isPassivated()) {
+                beanStore.activate(beanManager);
+            }
+
+            if (UIEvictionPolicy.getInstance().isEnabled()) {
+                beanStore.touch(System.currentTimeMillis());
+            }
+            return beanStore;
+        }
+
+        /**
+         * Evicts the bean stores selected by the {@link UIEvictionPolicy}. Open
+         * UIs are closed, only the stores of UIs which no longer exist in the
+         * session are destroyed. Must be called while holding the session
+         * lock.
+         * 
+         * @param session
+         *            the VaadinSession the UIs of this container belong to
+         * @param currentUIId
+         *            id of the UI being created, never evicted
+         */
+        void evict(final VaadinSession session, final int currentUIId) {
+            for (final UIBeanStore beanStore : UIEvictionPolicy.getInstance()
+                    .selectEvicted(beanStores.values(), currentUIId, session,
+                            System.currentTimeMillis())) {
+                final UI ui = session.getUIById(beanStore.getUIId());
+                if (ui != null) {
+                    // The beans are destroyed by uiDetached once Vaadin
+                    // removes the closed UI, never while the UI is open
+                    ui.close();
+                    logger.info("UI with id: " + beanStore.getUIId()
+                            + " was closed by UI scope eviction.");
+                } else if (beanStores.remove(beanStore.getUIId()) != null) {
+                    destroy(beanStore);
+                    logger.info("UI with id: " + beanStore.getUIId()
+                            + " was evicted from UI scope.");
+                }
             }
-            return beanStores.get(uiId);
+        }
+
+        private void markInUse() {
+            synchronized (this) {
+                if (inUse || destroyed) {
+                    return;
+                }
+                inUse = true;
+            }
+            UIContextMetrics.getInstance().sessionStarted(this);
+        }
+
+        /**
+         * @return true if the CDI session context of the container has been
+         *         destroyed
+         */
+        boolean isDestroyed() {
+            return destroyed;
         }
 
         public void uiDetached(final int uiId) {
-            beanStores.get(uiId).dereferenceAllBeanInstances();
-            beanStores.remove(uiId);
+            final UIBeanStore beanStore = beanStores.remove(uiId);
+            if (beanStore != null) {
+                destroy(beanStore);
+            }
             logger.info("UI with id: " + uiId + " was removed from UI scope.");
         }
 
         @PreDestroy
         private void preDestroy() {
+            destroyed = true;
+            UIContextMetrics.getInstance().sessionDestroyed(this);
             for (final UIBeanStore beanStore : beanStores.values()) {
-                beanStore.dereferenceAllBeanInstances();
+                // Removed so that a late uiDetached doesn't destroy it twice
+                if (beanStores.remove(beanStore.getUIId()) != null) {
+                    destroy(beanStore);
+                }
             }
         }
+
+        private void destroy(final UIBeanStore beanStore) {
+            // Restore passivated instances so that they get properly destroyed
+            beanStore.activate(beanManager);
+            beanStore.destroy();
+        }
+
+        private void readObject(final ObjectInputStream in)
+                throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            logger = Logger.getLogger(BeanStoreContainer.class.getName());
+        }
     }
 
     @UIScoped
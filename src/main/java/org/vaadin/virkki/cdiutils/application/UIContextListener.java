@@ -0,0 +1,33 @@
+package org.vaadin.virkki.cdiutils.application;
+
+import javax.enterprise.inject.spi.Bean;
+
+/**
+ * Listener notified about UI scope lifecycle events. CDI beans implementing
+ * this interface are registered automatically to {@link UIContextMetrics},
+ * other implementations can be registered with
+ * {@link UIContextMetrics#addListener(UIContextListener)}.
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+public interface UIContextListener {
+    /**
+     * Called when the bean store of a UI is created.
+     * 
+     * @param uiId
+     */
+    void beanStoreCreated(int uiId);
+
+    /**
+     * Called when the bean store of a UI is destroyed.
+     * 
+     * @param uiId
+     * @param beanCount
+     *            the number of bean instances destroyed with the store
+     */
+    void beanStoreDestroyed(int uiId, int beanCount);
+
+    void beanCreated(int uiId, Bean<?> bean);
+
+    void beanDestroyed(int uiId, Bean<?> bean);
+}
@@ -0,0 +1,286 @@
+package org.vaadin.virkki.cdiutils.application;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.enterprise.inject.spi.Bean;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.vaadin.virkki.cdiutils.application.UIContext.UIBeanStore;
+
+/**
+ * Counters for the UI scope. Exposed as a platform MBean and forwarded to
+ * registered {@link UIContextListener}s.
+ * <p>
+ * There's one instance per class loader, normally per web application. The
+ * MBean name is {@value #OBJECT_NAME} with an id key unique to the instance,
+ * so each application registers and unregisters its own MBean. If the add-on
+ * is shared by several applications, the instance stays registered until the
+ * last one of them is shut down.
+ * <p>
+ * Live counts are computed from the sessions and bean stores which have been
+ * used in this JVM and are not destroyed. They're held weakly, so sessions
+ * serialized away (passivation, failover) drop out once the container
+ * discards them, and a replica only counts after it's used. Serializing a
+ * session doesn't change any count.
+ *
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+public class UIContextMetrics implements UIContextMetricsMBean {
+    public static final String OBJECT_NAME = "org.vaadin.virkki.cdiutils:type=UIContextMetrics";
+
+    private static final UIContextMetrics INSTANCE = new UIContextMetrics();
+
+    private final Logger logger = Logger.getLogger(UIContextMetrics.class
+            .getName());
+
+    private final AtomicLong beanStoresCreated = new AtomicLong();
+    private final AtomicLong beanStoresDestroyed = new AtomicLong();
+    private final AtomicLong beanStoresRestored = new AtomicLong();
+    private final AtomicLong beansCreated = new AtomicLong();
+    private final AtomicLong beansDestroyed = new AtomicLong();
+    private final AtomicLong beansRestored = new AtomicLong();
+    private final AtomicLong maxBeanStoresPerSession = new AtomicLong();
+
+    private final Set<Object> liveSessions = Collections
+            .synchronizedSet(Collections
+                    .newSetFromMap(new WeakHashMap<Object, Boolean>()));
+    private final Set<UIBeanStore> liveBeanStores = Collections
+            .synchronizedSet(Collections
+                    .newSetFromMap(new WeakHashMap<UIBeanStore, Boolean>()));
+
+    private final List<UIContextListener> listeners = new CopyOnWriteArrayList<UIContextListener>();
+
+    private final String objectName = OBJECT_NAME + ",id="
+            + Integer.toHexString(System.identityHashCode(this));
+    private int registrations;
+
+    private UIContextMetrics() {
+    }
+
+    public static UIContextMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the name the MBean of this instance is registered with
+     */
+    public String getObjectName() {
+        return objectName;
+    }
+
+    public void addListener(final UIContextListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final UIContextListener listener) {
+        listeners.remove(listener);
+    }
+
+    synchronized void registerMBean() {
+        if (registrations++ > 0) {
+            return;
+        }
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, new ObjectName(objectName));
+        } catch (final JMException e) {
+            logger.log(Level.WARNING, "Unable to register UIContextMetrics",
+                    e);
+        }
+    }
+
+    synchronized void unregisterMBean() {
+        if (registrations == 0 || --registrations > 0) {
+            return;
+        }
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(objectName);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (final JMException e) {
+            logger.log(Level.WARNING,
+                    "Unable to unregister UIContextMetrics", e);
+        }
+    }
+
+    /**
+     * A new or deserialized session started using the UI scope in this JVM.
+     * 
+     * @param session
+     *            the BeanStoreContainer of the session
+     */
+    void sessionStarted(final Object session) {
+        liveSessions.add(session);
+    }
+
+    /**
+     * The session was destroyed.
+     * 
+     * @param session
+     *            the BeanStoreContainer of the session
+     */
+    void sessionDestroyed(final Object session) {
+        liveSessions.remove(session);
+    }
+
+    /**
+     * Records the number of bean stores in a session after a store was
+     * added to it.
+     * 
+     * @param beanStores
+     */
+    void beanStoreAdded(final int beanStores) {
+        long max = maxBeanStoresPerSession.get();
+        while (beanStores > max
+                && !maxBeanStoresPerSession.compareAndSet(max, beanStores)) {
+            max = maxBeanStoresPerSession.get();
+        }
+    }
+
+    void beanStoreCreated(final UIBeanStore beanStore) {
+        beanStoresCreated.incrementAndGet();
+        liveBeanStores.add(beanStore);
+        for (final UIContextListener listener : listeners) {
+            try {
+                listener.beanStoreCreated(beanStore.getUIId());
+            } catch (final RuntimeException e) {
+                logger.log(Level.WARNING, "UIContextListener failed", e);
+            }
+        }
+    }
+
+    /**
+     * A deserialized bean store was used for the first time in this JVM.
+     * 
+     * @param beanStore
+     * @param beanCount
+     *            the number of bean instances restored with the store
+     */
+    void beanStoreRestored(final UIBeanStore beanStore, final int beanCount) {
+        beanStoresRestored.incrementAndGet();
+        beansRestored.addAndGet(beanCount);
+        liveBeanStores.add(beanStore);
+    }
+
+    /**
+     * @param beanStore
+     * @param beanCount
+     *            the number of bean instances destroyed with the store
+     */
+    void beanStoreDestroyed(final UIBeanStore beanStore, final int beanCount) {
+        beanStoresDestroyed.incrementAndGet();
+        liveBeanStores.remove(beanStore);
+        for (final UIContextListener listener : listeners) {
+            try {
+                listener.beanStoreDestroyed(beanStore.getUIId(), beanCount);
+            } catch (final RuntimeException e) {
+                logger.log(Level.WARNING, "UIContextListener failed", e);
+            }
+        }
+    }
+
+    void beanCreated(final int uiId, final Bean<?> bean) {
+        beansCreated.incrementAndGet();
+        for (final UIContextListener listener : listeners) {
+            try {
+                listener.beanCreated(uiId, bean);
+            } catch (final RuntimeException e) {
+                logger.log(Level.WARNING, "UIContextListener failed", e);
+            }
+        }
+    }
+
+    void beanDestroyed(final int uiId, final Bean<?> bean) {
+        beansDestroyed.incrementAndGet();
+        for (final UIContextListener listener : listeners) {
+            try {
+                listener.beanDestroyed(uiId, bean);
+            } catch (final RuntimeException e) {
+                logger.log(Level.WARNING, "UIContextListener failed", e);
+            }
+        }
+    }
+
+    @Override
+    public long getLiveSessions() {
+        return liveSessions.size();
+    }
+
+    @Override
+    public long getLiveBeanStores() {
+        return liveBeanStores.size();
+    }
+
+    @Override
+    public long getLiveBeans() {
+        final List<UIBeanStore> beanStores;
+        synchronized (liveBeanStores) {
+            beanStores = new ArrayList<UIBeanStore>(liveBeanStores);
+        }
+        long beans = 0;
+        for (final UIBeanStore beanStore : beanStores) {
+            beans += beanStore.getBeanCount();
+        }
+        return beans;
+    }
+
+    @Override
+    public double getAverageBeansPerStore() {
+        final long stores = getLiveBeanStores();
+        return stores > 0 ? (double) getLiveBeans() / stores : 0.0;
+    }
+
+    @Override
+    public double getAverageBeanStoresPerSession() {
+        final long sessions = getLiveSessions();
+        return sessions > 0 ? (double) getLiveBeanStores() / sessions : 0.0;
+    }
+
+    @Override
+    public long getMaxBeanStoresPerSession() {
+        return maxBeanStoresPerSession.get();
+    }
+
+    @Override
+    public long getBeanStoresCreated() {
+        return beanStoresCreated.get();
+    }
+
+    @Override
+    public long getBeanStoresDestroyed() {
+        return beanStoresDestroyed.get();
+    }
+
+    @Override
+    public long getBeanStoresRestored() {
+        return beanStoresRestored.get();
+    }
+
+    @Override
+    public long getBeansCreated() {
+        return beansCreated.get();
+    }
+
+    @Override
+    public long getBeansDestroyed() {
+        return beansDestroyed.get();
+    }
+
+    @Override
+    public long getBeansRestored() {
+        return beansRestored.get();
+    }
+}
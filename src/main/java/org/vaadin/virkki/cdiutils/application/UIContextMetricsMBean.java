@@ -0,0 +1,57 @@
+package org.vaadin.virkki.cdiutils.application;
+
+/**
+ * Management interface of {@link UIContextMetrics}.
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+public interface UIContextMetricsMBean {
+    /**
+     * @return the number of sessions currently using the UI scope
+     */
+    long getLiveSessions();
+
+    /**
+     * @return the number of UI bean stores currently alive
+     */
+    long getLiveBeanStores();
+
+    /**
+     * @return the number of UI scoped bean instances currently alive
+     */
+    long getLiveBeans();
+
+    /**
+     * @return the average number of bean instances per live bean store
+     */
+    double getAverageBeansPerStore();
+
+    /**
+     * @return the average number of live bean stores per live session
+     */
+    double getAverageBeanStoresPerSession();
+
+    /**
+     * @return the highest number of bean stores a single session has had
+     */
+    long getMaxBeanStoresPerSession();
+
+    long getBeanStoresCreated();
+
+    long getBeanStoresDestroyed();
+
+    /**
+     * @return the number of deserialized bean stores taken into use in this
+     *         JVM (session activation or failover)
+     */
+    long getBeanStoresRestored();
+
+    long getBeansCreated();
+
+    long getBeansDestroyed();
+
+    /**
+     * @return the number of bean instances in the restored bean stores
+     */
+    long getBeansRestored();
+}
@@ -0,0 +1,112 @@
+package org.vaadin.virkki.cdiutils.application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.vaadin.virkki.cdiutils.application.UIContext.UIBeanStore;
+
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+
+/**
+ * Policy for evicting the bean stores of abandoned UIs before their session
+ * expires. Configured with system properties:
+ * <ul>
+ * <li>{@value #MAX_UIS_PER_SESSION}: maximum number of UI bean stores kept per
+ * session, least recently used stores are evicted first (0 = unlimited)</li>
+ * <li>{@value #UI_IDLE_TIMEOUT}: seconds after which a UI which hasn't been
+ * accessed and hasn't sent a heartbeat is evicted (0 = never). Should be
+ * longer than the heartbeat interval so that open UIs are never idle.</li>
+ * </ul>
+ * The policy is applied when a new UI is created in the session, so idle UIs
+ * of a session are only evicted once the user opens another one. An evicted
+ * UI is closed, its beans are destroyed when Vaadin removes it from the
+ * session. The bean store of a UI which no longer exists in the session is
+ * destroyed right away.
+ *
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+class UIEvictionPolicy {
+    static final String MAX_UIS_PER_SESSION = "org.vaadin.virkki.cdiutils.maxUIsPerSession";
+    static final String UI_IDLE_TIMEOUT = "org.vaadin.virkki.cdiutils.uiIdleTimeout";
+
+    private static final UIEvictionPolicy INSTANCE = new UIEvictionPolicy(
+            Integer.getInteger(MAX_UIS_PER_SESSION, 0), Long.getLong(
+                    UI_IDLE_TIMEOUT, 0L) * 1000L);
+
+    private final int maxBeanStores;
+    private final long idleTimeout;
+
+    UIEvictionPolicy(final int maxBeanStores, final long idleTimeout) {
+        this.maxBeanStores = maxBeanStores;
+        this.idleTimeout = idleTimeout;
+    }
+
+    static UIEvictionPolicy getInstance() {
+        return INSTANCE;
+    }
+
+    boolean isEnabled() {
+        return maxBeanStores > 0 || idleTimeout > 0;
+    }
+
+    /**
+     * Selects the bean stores to evict. A UI is active when its bean store was
+     * last accessed or when it last sent a heartbeat, whichever is later.
+     *
+     * @param beanStores
+     *            all the bean stores of a session
+     * @param currentUIId
+     *            id of the UI being accessed, never evicted
+     * @param session
+     *            the Vaadin session of the bean stores
+     * @param now
+     * @return
+     */
+    List<UIBeanStore> selectEvicted(final List<UIBeanStore> beanStores,
+            final int currentUIId, final VaadinSession session, final long now) {
+        final List<UIBeanStore> candidates = new ArrayList<UIBeanStore>();
+        final List<UIBeanStore> evicted = new ArrayList<UIBeanStore>();
+        final Map<Integer, Long> lastActive = new HashMap<Integer, Long>();
+        for (final UIBeanStore beanStore : beanStores) {
+            if (beanStore.getUIId() == currentUIId) {
+                continue;
+            }
+            final UI ui = session.getUIById(beanStore.getUIId());
+            if (ui != null && ui.isClosing()) {
+                // Already on its way out
+                continue;
+            }
+            final long active = Math.max(beanStore.getLastAccessed(),
+                    ui != null ? ui.getLastHeartbeatTimestamp() : 0L);
+            lastActive.put(beanStore.getUIId(), active);
+            if (idleTimeout > 0 && now - active > idleTimeout) {
+                evicted.add(beanStore);
+            } else {
+                candidates.add(beanStore);
+            }
+        }
+
+        if (maxBeanStores > 0) {
+            // The current UI takes one of the slots
+            final int excess = candidates.size() + 1 - maxBeanStores;
+            if (excess > 0) {
+                Collections.sort(candidates, new Comparator<UIBeanStore>() {
+                    @Override
+                    public int compare(final UIBeanStore o1,
+                            final UIBeanStore o2) {
+                        final long l1 = lastActive.get(o1.getUIId());
+                        final long l2 = lastActive.get(o2.getUIId());
+                        return l1 < l2 ? -1 : l1 == l2 ? 0 : 1;
+                    }
+                });
+                evicted.addAll(candidates.subList(0, excess));
+            }
+        }
+        return evicted;
+    }
+}
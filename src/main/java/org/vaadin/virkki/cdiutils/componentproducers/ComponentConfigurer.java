@@ -0,0 +1,421 @@
+package org.vaadin.virkki.cdiutils.componentproducers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.vaadin.server.Sizeable.Unit;
+import com.vaadin.shared.ui.MarginInfo;
+import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.AbstractField;
+import com.vaadin.ui.AbstractOrderedLayout;
+import com.vaadin.ui.AbstractSelect;
+import com.vaadin.ui.AbstractSelect.ItemCaptionMode;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Field;
+import com.vaadin.ui.Form;
+import com.vaadin.ui.GridLayout;
+import com.vaadin.ui.Label;
+
+/**
+ * {@link Preconfigured} attributes compiled into a list of setter actions for
+ * a specific component class. Only the actions that actually change the state
+ * of a freshly constructed component are included. Configurers are cached per
+ * distinct annotation value so the annotation is only read once.
+ * <p>
+ * A configurer is the closest thing to a component template that Vaadin 7
+ * allows. Each connector owns a mutable shared state object which is only
+ * reachable through the protected getState() and is diffed per connector, so
+ * a configured prototype's state can't be copied to or shared with new
+ * components. The setters have to be applied to each component.
+ *
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+class ComponentConfigurer {
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<Preconfigured, ComponentConfigurer>> CONFIGURERS = new ConcurrentHashMap<Class<?>, ConcurrentMap<Preconfigured, ComponentConfigurer>>();
+
+    private final List<Action> actions = new ArrayList<Action>();
+    private String captionKey;
+    private String labelValueKey;
+    private boolean localized;
+
+    /**
+     * Returns the configurer for the given annotation and component class.
+     *
+     * @param preconfigured
+     * @param component
+     *            a freshly constructed component used for comparing default
+     *            values if a new configurer needs to be compiled
+     * @return
+     */
+    static ComponentConfigurer get(final Preconfigured preconfigured,
+            final Component component) {
+        final Class<?> componentClass = component.getClass();
+        ConcurrentMap<Preconfigured, ComponentConfigurer> configurers = CONFIGURERS
+                .get(componentClass);
+        if (configurers == null) {
+            final ConcurrentMap<Preconfigured, ComponentConfigurer> newConfigurers = new ConcurrentHashMap<Preconfigured, ComponentConfigurer>();
+            configurers = CONFIGURERS.putIfAbsent(componentClass,
+                    newConfigurers);
+            if (configurers == null) {
+                configurers = newConfigurers;
+            }
+        }
+
+        ComponentConfigurer configurer = configurers.get(preconfigured);
+        if (configurer == null) {
+            configurer = new ComponentConfigurer(preconfigured, component);
+            configurers.putIfAbsent(preconfigured, configurer);
+        }
+        return configurer;
+    }
+
+    private ComponentConfigurer(final Preconfigured preconfigured,
+            final Component probe) {
+        compileComponentApi(preconfigured, probe);
+        if (probe instanceof Field) {
+            compileFieldApi(preconfigured, (Field<?>) probe);
+        }
+        if (probe instanceof AbstractField) {
+            compileAbstractFieldApi(preconfigured, (AbstractField<?>) probe);
+        }
+        if (probe instanceof AbstractComponent) {
+            final boolean immediate = preconfigured.immediate();
+            if (((AbstractComponent) probe).isImmediate() != immediate) {
+                actions.add(new Action() {
+                    @Override
+                    void apply(final Component component) {
+                        ((AbstractComponent) component).setImmediate(immediate);
+                    }
+                });
+            }
+        }
+        if (probe instanceof AbstractSelect) {
+            compileAbstractSelectApi(preconfigured, (AbstractSelect) probe);
+        }
+        compileLayoutApi(preconfigured, probe);
+    }
+
+    /**
+     * Applies the compiled actions to the component.
+     *
+     * @param component
+     *            an instance of the class this configurer was compiled for
+     */
+    void configure(final Component component) {
+        for (final Action action : actions) {
+            action.apply(component);
+        }
+    }
+
+    /**
+     * @return the TextBundle key for the caption or null if none should be
+     *         used
+     */
+    String getCaptionKey() {
+        return captionKey;
+    }
+
+    /**
+     * @return the TextBundle key for the Label value or null if none should
+     *         be used
+     */
+    String getLabelValueKey() {
+        return labelValueKey;
+    }
+
+    boolean isLocalized() {
+        return localized;
+    }
+
+    private void compileComponentApi(final Preconfigured preconfigured,
+            final Component probe) {
+        final boolean enabled = preconfigured.enabled();
+        if (probe.isEnabled() != enabled) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    component.setEnabled(enabled);
+                }
+            });
+        }
+
+        final boolean visible = preconfigured.visible();
+        if (probe.isVisible() != visible) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    component.setVisible(visible);
+                }
+            });
+        }
+
+        final boolean readOnly = preconfigured.readOnly();
+        if (probe.isReadOnly() != readOnly) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    component.setReadOnly(readOnly);
+                }
+            });
+        }
+
+        final String[] styleName = preconfigured.styleName();
+        if (styleName.length > 0) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    for (final String style : styleName) {
+                        component.addStyleName(style);
+                    }
+                }
+            });
+        }
+
+        final String caption = preconfigured.caption();
+        if (caption.isEmpty()) {
+            if (!preconfigured.captionKey().isEmpty()) {
+                captionKey = preconfigured.captionKey();
+            }
+        } else {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    component.setCaption(caption);
+                }
+            });
+        }
+
+        if (probe instanceof Label && !preconfigured.labelValueKey().isEmpty()) {
+            labelValueKey = preconfigured.labelValueKey();
+        }
+        localized = preconfigured.localized();
+
+        final String id = preconfigured.id();
+        if (!id.isEmpty()) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    component.setId(id);
+                }
+            });
+        }
+
+        if (preconfigured.sizeFull()) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    component.setSizeFull();
+                }
+            });
+        } else if (preconfigured.sizeUndefined()) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    component.setSizeUndefined();
+                }
+            });
+        } else {
+            final float width = preconfigured.width();
+            if (width > -1.0f) {
+                final Unit widthUnits = preconfigured.widthUnits();
+                actions.add(new Action() {
+                    @Override
+                    void apply(final Component component) {
+                        component.setWidth(width, widthUnits);
+                    }
+                });
+            }
+            final float height = preconfigured.height();
+            if (height > -1.0f) {
+                final Unit heightUnits = preconfigured.heightUnits();
+                actions.add(new Action() {
+                    @Override
+                    void apply(final Component component) {
+                        component.setHeight(height, heightUnits);
+                    }
+                });
+            }
+        }
+    }
+
+    private void compileFieldApi(final Preconfigured preconfigured,
+            final Field<?> probe) {
+        final String requiredError = preconfigured.requiredError();
+        if (!requiredError.isEmpty()) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    ((Field<?>) component).setRequiredError(requiredError);
+                }
+            });
+        }
+
+        final boolean required = preconfigured.required();
+        if (probe.isRequired() != required) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    ((Field<?>) component).setRequired(required);
+                }
+            });
+        }
+    }
+
+    private void compileAbstractFieldApi(final Preconfigured preconfigured,
+            final AbstractField<?> probe) {
+        final boolean invalidAllowed = preconfigured.invalidAllowed();
+        if (!(probe instanceof Form)
+                && probe.isInvalidAllowed() != invalidAllowed) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    ((AbstractField<?>) component)
+                            .setInvalidAllowed(invalidAllowed);
+                }
+            });
+        }
+
+        final boolean invalidCommitted = preconfigured.invalidCommitted();
+        if (probe.isInvalidCommitted() != invalidCommitted) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    ((AbstractField<?>) component)
+                            .setInvalidCommitted(invalidCommitted);
+                }
+            });
+        }
+
+        final boolean validationVisible = preconfigured.validationVisible();
+        if (probe.isValidationVisible() != validationVisible) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    ((AbstractField<?>) component)
+                            .setValidationVisible(validationVisible);
+                }
+            });
+        }
+
+        final int tabIndex = preconfigured.tabIndex();
+        if (tabIndex > -1 && probe.getTabIndex() != tabIndex) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    ((AbstractField<?>) component).setTabIndex(tabIndex);
+                }
+            });
+        }
+    }
+
+    private void compileAbstractSelectApi(final Preconfigured preconfigured,
+            final AbstractSelect probe) {
+        final boolean nullSelectionAllowed = preconfigured
+                .nullSelectionAllowed();
+        if (probe.isNullSelectionAllowed() != nullSelectionAllowed) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    ((AbstractSelect) component)
+                            .setNullSelectionAllowed(nullSelectionAllowed);
+                }
+            });
+        }
+
+        final boolean multiSelect = preconfigured.multiSelect();
+        if (probe.isMultiSelect() != multiSelect) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    ((AbstractSelect) component).setMultiSelect(multiSelect);
+                }
+            });
+        }
+
+        final boolean newItemsAllowed = preconfigured.newItemsAllowed();
+        if (probe.isNewItemsAllowed() != newItemsAllowed) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    ((AbstractSelect) component)
+                            .setNewItemsAllowed(newItemsAllowed);
+                }
+            });
+        }
+
+        final ItemCaptionMode itemCaptionMode = preconfigured
+                .itemCaptionMode();
+        if (probe.getItemCaptionMode() != itemCaptionMode) {
+            actions.add(new Action() {
+                @Override
+                void apply(final Component component) {
+                    ((AbstractSelect) component)
+                            .setItemCaptionMode(itemCaptionMode);
+                }
+            });
+        }
+    }
+
+    private void compileLayoutApi(final Preconfigured preconfigured,
+            final Component probe) {
+        final MarginInfo marginInfo = toMarginInfo(preconfigured.margin());
+        if (marginInfo != null) {
+            if (probe instanceof AbstractOrderedLayout) {
+                if (!marginInfo.equals(((AbstractOrderedLayout) probe)
+                        .getMargin())) {
+                    actions.add(new Action() {
+                        @Override
+                        void apply(final Component component) {
+                            ((AbstractOrderedLayout) component)
+                                    .setMargin(marginInfo);
+                        }
+                    });
+                }
+            } else if (probe instanceof GridLayout) {
+                if (!marginInfo.equals(((GridLayout) probe).getMargin())) {
+                    actions.add(new Action() {
+                        @Override
+                        void apply(final Component component) {
+                            ((GridLayout) component).setMargin(marginInfo);
+                        }
+                    });
+                }
+            }
+        }
+
+        if (probe instanceof AbstractOrderedLayout) {
+            final boolean spacing = preconfigured.spacing();
+            if (((AbstractOrderedLayout) probe).isSpacing() != spacing) {
+                actions.add(new Action() {
+                    @Override
+                    void apply(final Component component) {
+                        ((AbstractOrderedLayout) component).setSpacing(spacing);
+                    }
+                });
+            }
+        }
+    }
+
+    private static MarginInfo toMarginInfo(final boolean[] margin) {
+        MarginInfo mi = null;
+        if (margin.length == 1) {
+            mi = new MarginInfo(margin[0]);
+        } else if (margin.length == 2) {
+            mi = new MarginInfo(margin[0], margin[1], margin[0], margin[1]);
+        } else if (margin.length == 3) {
+            mi = new MarginInfo(margin[0], margin[1], margin[2], margin[1]);
+        } else if (margin.length == 4) {
+            mi = new MarginInfo(margin[0], margin[1], margin[2], margin[3]);
+        }
+        return mi;
+    }
+
+    /**
+     * A single compiled setter invocation.
+     */
+    private abstract static class Action {
+        abstract void apply(Component component);
+    }
+}
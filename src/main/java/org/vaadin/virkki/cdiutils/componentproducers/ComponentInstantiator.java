@@ -0,0 +1,91 @@
+package org.vaadin.virkki.cdiutils.componentproducers;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.enterprise.inject.CreationException;
+
+import com.vaadin.ui.Component;
+
+/**
+ * Instantiates components using no-arg constructors which are resolved only
+ * once per class.
+ *
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+class ComponentInstantiator {
+    private static final ConcurrentMap<Class<?>, Constructor<?>> CONSTRUCTORS = new ConcurrentHashMap<Class<?>, Constructor<?>>();
+
+    private ComponentInstantiator() {
+    }
+
+    /**
+     * Returns the class to instantiate for an injection point of the given
+     * type.
+     *
+     * @param type
+     *            the produced type
+     * @param preconfigured
+     * @return the implementation declared by the annotation if one is declared
+     *         and compatible with the type, the type itself otherwise
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Component> Class<? extends T> getImplementation(
+            final Class<T> type, final Preconfigured preconfigured) {
+        final Class<? extends Component> implementation = preconfigured
+                .implementation();
+        if (!implementation.equals(Component.class)
+                && type.isAssignableFrom(implementation)) {
+            return (Class<? extends T>) implementation;
+        }
+        return type;
+    }
+
+    /**
+     * Checks that instances of the class can be created.
+     *
+     * @param implementation
+     * @return a description of the problem or null if the class is valid
+     */
+    static String validate(final Class<?> implementation) {
+        if (Modifier.isAbstract(implementation.getModifiers())) {
+            return implementation.getName() + " is abstract";
+        }
+        try {
+            getConstructor(implementation);
+        } catch (final NoSuchMethodException e) {
+            return implementation.getName() + " has no no-arg constructor";
+        } catch (final SecurityException e) {
+            return "The no-arg constructor of " + implementation.getName()
+                    + " is not accessible";
+        }
+        return null;
+    }
+
+    static <T extends Component> T newInstance(final Class<T> implementation) {
+        try {
+            return implementation.cast(getConstructor(implementation)
+                    .newInstance());
+        } catch (final InvocationTargetException e) {
+            throw new CreationException("Unable to create "
+                    + implementation.getName(), e.getCause());
+        } catch (final Exception e) {
+            throw new CreationException("Unable to create "
+                    + implementation.getName(), e);
+        }
+    }
+
+    private static Constructor<?> getConstructor(final Class<?> implementation)
+            throws NoSuchMethodException {
+        Constructor<?> constructor = CONSTRUCTORS.get(implementation);
+        if (constructor == null) {
+            constructor = implementation.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            CONSTRUCTORS.putIfAbsent(implementation, constructor);
+        }
+        return constructor;
+    }
+}
@@ -2,31 +2,30 @@ package org.vaadin.virkki.cdiutils.componentproducers;
 
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.logging.Logger;
 
 import javax.enterprise.context.SessionScoped;
 import javax.enterprise.inject.Instance;
 import javax.enterprise.inject.Produces;
+import javax.enterprise.inject.Typed;
 import javax.enterprise.inject.UnsatisfiedResolutionException;
 import javax.enterprise.inject.spi.InjectionPoint;
 import javax.inject.Inject;
 
 import org.vaadin.virkki.cdiutils.TextBundle;
 
-import com.vaadin.server.Sizeable.Unit;
-import com.vaadin.shared.ui.MarginInfo;
+import com.vaadin.server.ClientConnector.DetachEvent;
+import com.vaadin.server.ClientConnector.DetachListener;
 import com.vaadin.ui.AbsoluteLayout;
-import com.vaadin.ui.AbstractComponent;
-import com.vaadin.ui.AbstractField;
-import com.vaadin.ui.AbstractOrderedLayout;
-import com.vaadin.ui.AbstractSelect;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.CheckBox;
 import com.vaadin.ui.ComboBox;
 import com.vaadin.ui.Component;
 import com.vaadin.ui.CssLayout;
 import com.vaadin.ui.Embedded;
-import com.vaadin.ui.Field;
 import com.vaadin.ui.Form;
 import com.vaadin.ui.FormLayout;
 import com.vaadin.ui.GridLayout;
@@ -52,6 +51,7 @@ import com.vaadin.ui.TextArea;
 import com.vaadin.ui.TextField;
 import com.vaadin.ui.Tree;
 import com.vaadin.ui.TwinColSelect;
+import com.vaadin.ui.UI;
 import com.vaadin.ui.Upload;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.VerticalSplitPanel;
@@ -85,433 +85,488 @@ public class ComponentProducers implements Serializable {
     @Inject
     private Instance<Localizer> localizer;
 
+    private final FactoryLocalization factoryLocalization = new FactoryLocalization();
+
+    /**
+     * TextBundle and Localizer resolved for the UI that was last current,
+     * released when that UI is detached. Replaced as a whole, so a thread
+     * never sees the references of one UI paired with another UI.
+     */
+    private transient volatile UIReferences uiReferences;
+    private final UIInvalidator uiInvalidator = new UIInvalidator();
+
     /**
-     * Applies @Preconfigured attributes to Vaadin Components.
+     * Creates a component of the given type (or the implementation declared
+     * with @Preconfigured) and applies the @Preconfigured attributes to it.
      * 
-     * @param c
+     * @param type
      * @param injectionPoint
      * @return
      */
-    @SuppressWarnings("unchecked")
-    private <T extends Component> T configureComponent(final T c,
+    private <T extends Component> T produceComponent(final Class<T> type,
             final InjectionPoint injectionPoint) {
-        T component = c;
-        for (final Annotation annotation : injectionPoint.getQualifiers()) {
-            if (annotation instanceof Preconfigured) {
-                final Preconfigured preconfigured = (Preconfigured) annotation;
-
-                if (!preconfigured.implementation().equals(Component.class)) {
-                    if (component.getClass().isAssignableFrom(
-                            preconfigured.implementation())) {
-                        try {
-                            component = (T) preconfigured.implementation()
-                                    .newInstance();
-                        } catch (final InstantiationException e) {
-                            e.printStackTrace();
-                        } catch (final IllegalAccessException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
-                configureComponentApi(component, preconfigured);
-
-                if (component instanceof Field) {
-                    configureFieldApi((Field) component, preconfigured);
-                }
-                if (component instanceof AbstractField) {
-                    configureAbstractFieldApi((AbstractField) component,
-                            preconfigured);
-                }
-                if (component instanceof AbstractComponent) {
-                    ((AbstractComponent) component).setImmediate(preconfigured
-                            .immediate());
-                }
-                if (component instanceof AbstractSelect) {
-                    configureAbstractSelectApi((AbstractSelect) component,
-                            preconfigured);
-                }
-
-                MarginInfo mi = null;
-                final boolean[] margin = preconfigured.margin();
-                if (margin.length == 1) {
-                    mi = new MarginInfo(margin[0]);
-                } else if (margin.length == 2) {
-                    mi = new MarginInfo(margin[0], margin[1], margin[0],
-                            margin[1]);
-                } else if (margin.length == 3) {
-                    mi = new MarginInfo(margin[0], margin[1], margin[2],
-                            margin[1]);
-                } else if (margin.length == 4) {
-                    mi = new MarginInfo(margin[0], margin[1], margin[2],
-                            margin[3]);
-                }
-
-                if (mi != null) {
-                    if (component instanceof AbstractOrderedLayout) {
-                        ((AbstractOrderedLayout) component).setMargin(mi);
-                    } else if (component instanceof GridLayout) {
-                        ((GridLayout) component).setMargin(mi);
-                    }
-                }
-
-                if (component instanceof AbstractOrderedLayout) {
-                    ((AbstractOrderedLayout) component)
-                            .setSpacing(preconfigured.spacing());
-                }
-            }
+        final T generated = createGeneratedComponent(type, injectionPoint);
+        if (generated != null) {
+            return generated;
         }
-        return component;
+
+        return produceComponent(type, getPreconfigured(injectionPoint));
     }
 
-    private void configureAbstractSelectApi(
-            final AbstractSelect abstractSelect,
+    /**
+     * Creates a component of the given type (or the declared implementation)
+     * and applies the @Preconfigured attributes to it.
+     * 
+     * @param type
+     * @param preconfigured
+     * @return
+     */
+    <T extends Component> T produceComponent(final Class<T> type,
             final Preconfigured preconfigured) {
-        abstractSelect.setNullSelectionAllowed(preconfigured
-                .nullSelectionAllowed());
-        abstractSelect.setMultiSelect(preconfigured.multiSelect());
-        abstractSelect.setNewItemsAllowed(preconfigured.newItemsAllowed());
-        // if (preconfigured.itemCaptionMode() > -1) {
-        abstractSelect.setItemCaptionMode(preconfigured.itemCaptionMode());
-        // }
-
+        return produceComponent(type, preconfigured, factoryLocalization);
     }
 
-    private void configureAbstractFieldApi(final AbstractField abstractField,
-            final Preconfigured preconfigured) {
-        if (!(abstractField instanceof Form)) {
-            abstractField.setInvalidAllowed(preconfigured.invalidAllowed());
+    /**
+     * Creates a component and applies the @Preconfigured attributes to it
+     * using the given localization.
+     * 
+     * @param type
+     * @param preconfigured
+     * @param localization
+     * @return
+     */
+    <T extends Component> T produceComponent(final Class<T> type,
+            final Preconfigured preconfigured,
+            final PreconfiguredFactory.Localization localization) {
+        final T component = ComponentInstantiator
+                .newInstance(ComponentInstantiator.getImplementation(type,
+                        preconfigured));
+        final ComponentConfigurer configurer = ComponentConfigurer.get(
+                preconfigured, component);
+        configurer.configure(component);
+        if (configurer.getCaptionKey() != null) {
+            localization.localizeCaption(component,
+                    configurer.getCaptionKey(), configurer.isLocalized());
         }
-        abstractField.setInvalidCommitted(preconfigured.invalidCommitted());
-        abstractField.setValidationVisible(preconfigured.validationVisible());
-        if (preconfigured.tabIndex() > -1) {
-            abstractField.setTabIndex(preconfigured.tabIndex());
+        if (configurer.getLabelValueKey() != null) {
+            localization.localizeLabelValue((Label) component,
+                    configurer.getLabelValueKey(), configurer.isLocalized());
         }
+        return component;
     }
 
-    private void configureFieldApi(final Field field,
-            final Preconfigured preconfigured) {
-        final String description = preconfigured.description();
-        if (!description.isEmpty()) {
-            // field.setDescription(description);
+    /**
+     * @return the localization used for produced components
+     */
+    PreconfiguredFactory.Localization getLocalization() {
+        return factoryLocalization;
+    }
+
+    private Preconfigured getPreconfigured(final InjectionPoint injectionPoint) {
+        for (final Annotation annotation : injectionPoint.getQualifiers()) {
+            if (annotation instanceof Preconfigured) {
+                return (Preconfigured) annotation;
+            }
         }
+        throw new IllegalArgumentException(
+                "No @Preconfigured qualifier found at " + injectionPoint);
+    }
 
-        final String requiredError = preconfigured.requiredError();
-        if (!requiredError.isEmpty()) {
-            field.setRequiredError(requiredError);
+    /**
+     * Creates the component using a factory generated by
+     * {@link PreconfiguredProcessor} if one exists for the injection point.
+     * 
+     * @param type
+     * @param injectionPoint
+     * @return the component or null if no generated factory handles the
+     *         injection point
+     */
+    private <T extends Component> T createGeneratedComponent(
+            final Class<T> type, final InjectionPoint injectionPoint) {
+        if (injectionPoint.getMember() instanceof Field) {
+            final Field field = (Field) injectionPoint.getMember();
+            final Component component = PreconfiguredFactories.get(
+                    field.getDeclaringClass()).createComponent(
+                    field.getName(), factoryLocalization);
+            if (type.isInstance(component)) {
+                return type.cast(component);
+            }
         }
+        return null;
+    }
 
-        field.setRequired(preconfigured.required());
+    /**
+     * @return the TextBundle of the current UI, resolved once per UI
+     * @throws UnsatisfiedResolutionException
+     *             if there's no TextBundle implementation
+     */
+    TextBundle getTextBundle() {
+        final UI ui = UI.getCurrent();
+        if (ui == null) {
+            return textBundle.get();
+        }
+        UIReferences references = getUIReferences(ui);
+        if (references.textBundle == null) {
+            references = new UIReferences(ui, textBundle.get(),
+                    references.localizer);
+            uiReferences = references;
+        }
+        return references.textBundle;
     }
 
-    private void configureComponentApi(final Component component,
-            final Preconfigured preconfigured) {
-        component.setEnabled(preconfigured.enabled());
-        component.setVisible(preconfigured.visible());
-        component.setReadOnly(preconfigured.readOnly());
-
-        final String[] styleName = preconfigured.styleName();
-        if (styleName.length > 0) {
-            for (final String style : styleName) {
-                component.addStyleName(style);
+    /**
+     * @return the Localizer of the current UI, resolved once per UI
+     */
+    Localizer getLocalizer() {
+        final UI ui = UI.getCurrent();
+        if (ui == null) {
+            return localizer.get();
+        }
+        UIReferences references = getUIReferences(ui);
+        if (references.localizer == null) {
+            references = new UIReferences(ui, references.textBundle,
+                    localizer.get());
+            uiReferences = references;
+        }
+        return references.localizer;
+    }
+
+    /**
+     * Returns the references resolved for the UI, releasing the ones of
+     * another UI. Called while holding the session lock, like all UI access.
+     * 
+     * @param ui
+     *            the current UI
+     */
+    private UIReferences getUIReferences(final UI ui) {
+        final UIReferences references = uiReferences;
+        if (references != null && references.ui == ui) {
+            return references;
+        }
+        if (references != null) {
+            references.ui.removeDetachListener(uiInvalidator);
+        }
+        ui.addDetachListener(uiInvalidator);
+        final UIReferences newReferences = new UIReferences(ui, null, null);
+        uiReferences = newReferences;
+        return newReferences;
+    }
+
+    private void localizeCaption(final Component component,
+            final String captionKey, final boolean localized) {
+        try {
+            component.setCaption(getTextBundle().getText(captionKey));
+            if (localized) {
+                getLocalizer().addLocalizedCaption(component, captionKey);
             }
+        } catch (final UnsatisfiedResolutionException e) {
+            component.setCaption("No TextBundle implementation found!");
         }
+    }
 
-        final String caption = preconfigured.caption();
-        if (caption.isEmpty()) {
-            final String captionKey = preconfigured.captionKey();
-            if (!captionKey.isEmpty()) {
-                try {
-                    component.setCaption(textBundle.get().getText(captionKey));
-                    if (preconfigured.localized()) {
-                        localizer.get().addLocalizedCaption(component,
-                                captionKey);
-                    }
-                } catch (final UnsatisfiedResolutionException e) {
-                    component.setCaption("No TextBundle implementation found!");
-                }
+    private void localizeLabelValue(final Label label,
+            final String labelValueKey, final boolean localized) {
+        try {
+            label.setValue(getTextBundle().getText(labelValueKey));
+            if (localized) {
+                getLocalizer().addLocalizedLabelValue(label, labelValueKey);
             }
-        } else {
-            component.setCaption(caption);
+        } catch (final UnsatisfiedResolutionException e) {
+            label.setCaption("No TextBundle implementation found!");
         }
+    }
 
-        if (component instanceof Label) {
-            final String labelValueKey = preconfigured.labelValueKey();
-            if (!labelValueKey.isEmpty()) {
-                try {
-                    ((Label) component).setValue(textBundle.get().getText(
-                            labelValueKey));
-                    if (preconfigured.localized()) {
-                        localizer.get().addLocalizedLabelValue(
-                                (Label) component, labelValueKey);
-                    }
-                } catch (final UnsatisfiedResolutionException e) {
-                    component.setCaption("No TextBundle implementation found!");
-                }
+    /**
+     * Releases the cached references when their UI is detached.
+     */
+    private class UIInvalidator implements DetachListener {
+        @Override
+        public void detach(final DetachEvent event) {
+            final UIReferences references = uiReferences;
+            if (references != null && event.getSource() == references.ui) {
+                uiReferences = null;
             }
         }
+    }
 
-        final String id = preconfigured.id();
-        if (!id.isEmpty()) {
-            component.setId(id);
+    /**
+     * The UI scoped references of a UI. UI scoped references are the
+     * instances of that UI, not client proxies.
+     */
+    private static class UIReferences {
+        private final UI ui;
+        private final TextBundle textBundle;
+        private final Localizer localizer;
+
+        UIReferences(final UI ui, final TextBundle textBundle,
+                final Localizer localizer) {
+            this.ui = ui;
+            this.textBundle = textBundle;
+            this.localizer = localizer;
         }
+    }
 
-        if (preconfigured.sizeFull()) {
-            component.setSizeFull();
-        } else if (preconfigured.sizeUndefined()) {
-            component.setSizeUndefined();
-        } else {
-            final float width = preconfigured.width();
-            if (width > -1.0f) {
-                final Unit widthUnits = preconfigured.widthUnits();
-                component.setWidth(width, widthUnits);
-            }
-            final float height = preconfigured.height();
-            if (height > -1.0f) {
-                final Unit heightUnits = preconfigured.heightUnits();
-                component.setHeight(height, heightUnits);
-            }
+    /**
+     * Localization callback for generated factories.
+     */
+    private class FactoryLocalization implements
+            PreconfiguredFactory.Localization, Serializable {
+        @Override
+        public void localizeCaption(final Component component,
+                final String captionKey, final boolean localized) {
+            ComponentProducers.this.localizeCaption(component, captionKey,
+                    localized);
+        }
+
+        @Override
+        public void localizeLabelValue(final Label label,
+                final String labelValueKey, final boolean localized) {
+            ComponentProducers.this.localizeLabelValue(label, labelValueKey,
+                    localized);
         }
+    }
+
+    /**
+     * Produces a placeholder which creates the component declared by the
+     * type argument of the injection point only when it's needed.
+     * 
+     * @param ip
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    @Produces
+    @Preconfigured
+    @Typed(LazyComponent.class)
+    public <T extends Component> LazyComponent<T> createLazyComponent(
+            final InjectionPoint ip) {
+        return new LazyComponent<T>(
+                (Class<T>) getLazyComponentType(ip.getType()),
+                getPreconfigured(ip), this);
+    }
 
+    /**
+     * @param injectionPointType
+     * @return the component class declared by the type argument of a
+     *         LazyComponent injection point
+     */
+    static Class<?> getLazyComponentType(final Type injectionPointType) {
+        if (injectionPointType instanceof ParameterizedType) {
+            final Type argument = ((ParameterizedType) injectionPointType)
+                    .getActualTypeArguments()[0];
+            if (argument instanceof Class<?>
+                    && Component.class.isAssignableFrom((Class<?>) argument)) {
+                return (Class<?>) argument;
+            }
+        }
+        throw new IllegalArgumentException(
+                "LazyComponent must be injected with a concrete component type argument, found "
+                        + injectionPointType);
     }
 
     // Generated producer methods for Vaadin components
     @Produces
     @Preconfigured
     public AbsoluteLayout createAbsoluteLayout(final InjectionPoint ip) {
-        final AbsoluteLayout component = new AbsoluteLayout();
-        return configureComponent(component, ip);
+        return produceComponent(AbsoluteLayout.class, ip);
     }
 
     @Produces
     @Preconfigured
     public Button createButton(final InjectionPoint ip) {
-        final Button component = new Button();
-        return configureComponent(component, ip);
+        return produceComponent(Button.class, ip);
     }
 
     @Produces
     @Preconfigured
     public CheckBox createCheckBox(final InjectionPoint ip) {
-        final CheckBox component = new CheckBox();
-        return configureComponent(component, ip);
+        return produceComponent(CheckBox.class, ip);
     }
 
     @Produces
     @Preconfigured
     public ComboBox createComboBox(final InjectionPoint ip) {
-        final ComboBox component = new ComboBox();
-        return configureComponent(component, ip);
+        return produceComponent(ComboBox.class, ip);
     }
 
     @Produces
     @Preconfigured
     public CssLayout createCssLayout(final InjectionPoint ip) {
-        final CssLayout component = new CssLayout();
-        return configureComponent(component, ip);
+        return produceComponent(CssLayout.class, ip);
     }
 
     @Produces
     @Preconfigured
     public Embedded createEmbedded(final InjectionPoint ip) {
-        final Embedded component = new Embedded();
-        return configureComponent(component, ip);
+        return produceComponent(Embedded.class, ip);
     }
 
     @Produces
     @Preconfigured
     public Form createForm(final InjectionPoint ip) {
-        final Form component = new Form();
-        return configureComponent(component, ip);
+        return produceComponent(Form.class, ip);
     }
 
     @Produces
     @Preconfigured
     public FormLayout createFormLayout(final InjectionPoint ip) {
-        final FormLayout component = new FormLayout();
-        return configureComponent(component, ip);
+        return produceComponent(FormLayout.class, ip);
     }
 
     @Produces
     @Preconfigured
     public GridLayout createGridLayout(final InjectionPoint ip) {
-        final GridLayout component = new GridLayout();
-        return configureComponent(component, ip);
+        return produceComponent(GridLayout.class, ip);
     }
 
     @Produces
     @Preconfigured
     public HorizontalLayout createHorizontalLayout(final InjectionPoint ip) {
-        final HorizontalLayout component = new HorizontalLayout();
-        return configureComponent(component, ip);
+        return produceComponent(HorizontalLayout.class, ip);
     }
 
     @Produces
     @Preconfigured
     public HorizontalSplitPanel createHorizontalSplitPanel(
             final InjectionPoint ip) {
-        final HorizontalSplitPanel component = new HorizontalSplitPanel();
-        return configureComponent(component, ip);
+        return produceComponent(HorizontalSplitPanel.class, ip);
     }
 
     @Produces
     @Preconfigured
     public InlineDateField createInlineDateField(final InjectionPoint ip) {
-        final InlineDateField component = new InlineDateField();
-        return configureComponent(component, ip);
+        return produceComponent(InlineDateField.class, ip);
     }
 
     @Produces
     @Preconfigured
     public Label createLabel(final InjectionPoint ip) {
-        final Label component = new Label();
-        return configureComponent(component, ip);
+        return produceComponent(Label.class, ip);
     }
 
     @Produces
     @Preconfigured
     public Link createLink(final InjectionPoint ip) {
-        final Link component = new Link();
-        return configureComponent(component, ip);
+        return produceComponent(Link.class, ip);
     }
 
     @Produces
     @Preconfigured
     public ListSelect createListSelect(final InjectionPoint ip) {
-        final ListSelect component = new ListSelect();
-        return configureComponent(component, ip);
+        return produceComponent(ListSelect.class, ip);
     }
 
     @Produces
     @Preconfigured
     public LoginForm createLoginForm(final InjectionPoint ip) {
-        final LoginForm component = new LoginForm();
-        return configureComponent(component, ip);
+        return produceComponent(LoginForm.class, ip);
     }
 
     @Produces
     @Preconfigured
     public MenuBar createMenuBar(final InjectionPoint ip) {
-        final MenuBar component = new MenuBar();
-        return configureComponent(component, ip);
+        return produceComponent(MenuBar.class, ip);
     }
 
     @Produces
     @Preconfigured
     public NativeSelect createNativeSelect(final InjectionPoint ip) {
-        final NativeSelect component = new NativeSelect();
-        return configureComponent(component, ip);
+        return produceComponent(NativeSelect.class, ip);
     }
 
     @Produces
     @Preconfigured
     public OptionGroup createOptionGroup(final InjectionPoint ip) {
-        final OptionGroup component = new OptionGroup();
-        return configureComponent(component, ip);
+        return produceComponent(OptionGroup.class, ip);
     }
 
     @Produces
     @Preconfigured
     public Panel createPanel(final InjectionPoint ip) {
-        final Panel component = new Panel();
-        return configureComponent(component, ip);
+        return produceComponent(Panel.class, ip);
     }
 
     @Produces
     @Preconfigured
     public PasswordField createPasswordField(final InjectionPoint ip) {
-        final PasswordField component = new PasswordField();
-        return configureComponent(component, ip);
+        return produceComponent(PasswordField.class, ip);
     }
 
     @Produces
     @Preconfigured
     public PopupDateField createPopupDateField(final InjectionPoint ip) {
-        final PopupDateField component = new PopupDateField();
-        return configureComponent(component, ip);
+        return produceComponent(PopupDateField.class, ip);
     }
 
     @Produces
     @Preconfigured
     public ProgressIndicator createProgressIndicator(final InjectionPoint ip) {
-        final ProgressIndicator component = new ProgressIndicator();
-        return configureComponent(component, ip);
+        return produceComponent(ProgressIndicator.class, ip);
     }
 
     @Produces
     @Preconfigured
     public RichTextArea createRichTextArea(final InjectionPoint ip) {
-        final RichTextArea component = new RichTextArea();
-        return configureComponent(component, ip);
+        return produceComponent(RichTextArea.class, ip);
     }
 
     @Produces
     @Preconfigured
     public Slider createSlider(final InjectionPoint ip) {
-        final Slider component = new Slider();
-        return configureComponent(component, ip);
+        return produceComponent(Slider.class, ip);
     }
 
     @Produces
     @Preconfigured
     public Table createTable(final InjectionPoint ip) {
-        final Table component = new Table();
-        return configureComponent(component, ip);
+        return produceComponent(Table.class, ip);
     }
 
     @Produces
     @Preconfigured
     public TabSheet createTabSheet(final InjectionPoint ip) {
-        final TabSheet component = new TabSheet();
-        return configureComponent(component, ip);
+        return produceComponent(TabSheet.class, ip);
     }
 
     @Produces
     @Preconfigured
     public TextArea createTextArea(final InjectionPoint ip) {
-        final TextArea component = new TextArea();
-        return configureComponent(component, ip);
+        return produceComponent(TextArea.class, ip);
     }
 
     @Produces
     @Preconfigured
     public TextField createTextField(final InjectionPoint ip) {
-        final TextField component = new TextField();
-        return configureComponent(component, ip);
+        return produceComponent(TextField.class, ip);
     }
 
     @Produces
     @Preconfigured
     public Tree createTree(final InjectionPoint ip) {
-        final Tree component = new Tree();
-        return configureComponent(component, ip);
+        return produceComponent(Tree.class, ip);
     }
 
     @Produces
     @Preconfigured
     public TwinColSelect createTwinColSelect(final InjectionPoint ip) {
-        final TwinColSelect component = new TwinColSelect();
-        return configureComponent(component, ip);
+        return produceComponent(TwinColSelect.class, ip);
     }
 
     @Produces
     @Preconfigured
     public Upload createUpload(final InjectionPoint ip) {
-        final Upload component = new Upload();
-        return configureComponent(component, ip);
+        return produceComponent(Upload.class, ip);
     }
 
     @Produces
     @Preconfigured
     public VerticalLayout createVerticalLayout(final InjectionPoint ip) {
-        final VerticalLayout component = new VerticalLayout();
-        return configureComponent(component, ip);
+        return produceComponent(VerticalLayout.class, ip);
     }
 
     @Produces
     @Preconfigured
     public VerticalSplitPanel createVerticalSplitPanel(final InjectionPoint ip) {
-        final VerticalSplitPanel component = new VerticalSplitPanel();
-        return configureComponent(component, ip);
+        return produceComponent(VerticalSplitPanel.class, ip);
     }
 
 }
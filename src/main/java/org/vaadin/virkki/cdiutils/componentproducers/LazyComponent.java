@@ -0,0 +1,144 @@
+package org.vaadin.virkki.cdiutils.componentproducers;
+
+import java.io.Serializable;
+
+import com.vaadin.server.Sizeable;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.CustomComponent;
+import com.vaadin.ui.Label;
+
+/**
+ * Placeholder for a {@link Preconfigured} component which is constructed and
+ * configured only when the placeholder is attached while visible or the
+ * component is first accessed. Inject instead of the component itself for
+ * rarely shown parts of a view (tabs, hidden panels, dialog content):
+ *
+ * <pre>
+ * &#064;Inject
+ * &#064;Preconfigured(captionKey = &quot;details&quot;, sizeFull = true)
+ * private LazyComponent&lt;Panel&gt; details;
+ * </pre>
+ *
+ * The placeholder is what gets added to layouts. Since a CustomComponent
+ * doesn't render the caption of its root, the placeholder carries the
+ * caption (including localized updates), the visibility and the style names
+ * declared for the component. Once created it also takes over the size of the
+ * actual component.
+ *
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+@SuppressWarnings("serial")
+public class LazyComponent<T extends Component> extends CustomComponent {
+    private final Class<T> type;
+    private final Preconfigured preconfigured;
+    private final ComponentProducers componentProducers;
+    private T component;
+
+    LazyComponent(final Class<T> type, final Preconfigured preconfigured,
+            final ComponentProducers componentProducers) {
+        this.type = type;
+        this.preconfigured = preconfigured;
+        this.componentProducers = componentProducers;
+        setVisible(preconfigured.visible());
+    }
+
+    /**
+     * @return the actual component, created on first invocation
+     */
+    public T get() {
+        if (component == null) {
+            component = componentProducers.produceComponent(type,
+                    preconfigured, new PlaceholderLocalization(
+                            componentProducers.getLocalization()));
+            adoptCaption(component);
+            adoptStyleNames(component);
+            // The placeholder's visibility applies
+            component.setVisible(true);
+            adoptSize(component);
+            setCompositionRoot(component);
+        }
+        return component;
+    }
+
+    /**
+     * @return true if the actual component has already been created
+     */
+    public boolean isCreated() {
+        return component != null;
+    }
+
+    @Override
+    public void attach() {
+        super.attach();
+        if (isVisible()) {
+            get();
+        }
+    }
+
+    @Override
+    public void setVisible(final boolean visible) {
+        super.setVisible(visible);
+        if (visible && getUI() != null) {
+            get();
+        }
+    }
+
+    private void adoptCaption(final Component c) {
+        // A localized caption was already applied to the placeholder
+        if (c.getCaption() != null) {
+            setCaption(c.getCaption());
+            c.setCaption(null);
+        }
+    }
+
+    private void adoptStyleNames(final Component c) {
+        final String styleNames = c.getStyleName();
+        if (styleNames != null && styleNames.length() > 0) {
+            for (final String styleName : styleNames.split(" ")) {
+                if (styleName.length() > 0) {
+                    addStyleName(styleName);
+                }
+            }
+            c.setStyleName(null);
+        }
+    }
+
+    private void adoptSize(final Component c) {
+        setWidth(c.getWidth(), c.getWidthUnits());
+        if (c.getWidth() >= 0 && c.getWidthUnits() == Sizeable.Unit.PERCENTAGE) {
+            c.setWidth(100, Sizeable.Unit.PERCENTAGE);
+        }
+        setHeight(c.getHeight(), c.getHeightUnits());
+        if (c.getHeight() >= 0
+                && c.getHeightUnits() == Sizeable.Unit.PERCENTAGE) {
+            c.setHeight(100, Sizeable.Unit.PERCENTAGE);
+        }
+    }
+
+    /**
+     * Localizes the caption of the placeholder instead of the component so
+     * that localized updates reach the rendered caption.
+     */
+    private class PlaceholderLocalization implements
+            PreconfiguredFactory.Localization, Serializable {
+        private final PreconfiguredFactory.Localization localization;
+
+        PlaceholderLocalization(
+                final PreconfiguredFactory.Localization localization) {
+            this.localization = localization;
+        }
+
+        @Override
+        public void localizeCaption(final Component c,
+                final String captionKey, final boolean localized) {
+            localization.localizeCaption(LazyComponent.this, captionKey,
+                    localized);
+        }
+
+        @Override
+        public void localizeLabelValue(final Label label,
+                final String labelValueKey, final boolean localized) {
+            localization.localizeLabelValue(label, labelValueKey, localized);
+        }
+    }
+}
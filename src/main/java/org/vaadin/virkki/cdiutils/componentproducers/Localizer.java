@@ -1,9 +1,15 @@
 package org.vaadin.virkki.cdiutils.componentproducers;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import javax.enterprise.event.Observes;
 import javax.enterprise.inject.Instance;
@@ -15,11 +21,26 @@ import org.vaadin.virkki.cdiutils.application.UIContext.UIScoped;
 import org.vaadin.virkki.cdiutils.mvp.CDIEvent;
 import org.vaadin.virkki.cdiutils.mvp.ParameterDTO;
 
+import com.vaadin.server.ClientConnector.AttachEvent;
+import com.vaadin.server.ClientConnector.AttachListener;
+import com.vaadin.server.ClientConnector.DetachEvent;
+import com.vaadin.server.ClientConnector.DetachListener;
 import com.vaadin.ui.Component;
 import com.vaadin.ui.Label;
 
 /**
  * Collection of components whose captions or value should be localized
+ * <p>
+ * Registrations are grouped by key so that each key is resolved only once per
+ * update. Only attached components are updated. A component which missed
+ * updates while detached gets the current text when it's attached again,
+ * others are left untouched on attach. Components whose text didn't change
+ * are left untouched. Texts are always resolved from the TextBundle at the
+ * time of use, so they follow locale and text table changes.
+ * <p>
+ * Registered components are referenced weakly. Detached components are
+ * removed from the update groups, so discarded components are neither
+ * retained nor localized.
  * 
  * @author Tomi Virkki / Vaadin Ltd
  */
@@ -28,43 +49,282 @@ import com.vaadin.ui.Label;
 public class Localizer implements Serializable {
     public static final String UPDATE_LOCALIZED_VALUES = "update_localized_values";
 
+    private static final String NO_TEXT_BUNDLE = "No TextBundle implementation found!";
+
     @Inject
     private Instance<TextBundle> textBundle;
 
-    private final Map<Component, String> localizedCaptions = new HashMap<Component, String>();
-    private final Map<Label, String> localizedLabelValues = new HashMap<Label, String>();
+    private transient Map<Component, Registration> localizedCaptions = new WeakHashMap<Component, Registration>();
+    private transient Map<Label, Registration> localizedLabelValues = new WeakHashMap<Label, Registration>();
+
+    /**
+     * Attached components grouped by key
+     */
+    private final Map<String, Set<Component>> captionsByKey = new HashMap<String, Set<Component>>();
+    private final Map<String, Set<Label>> labelValuesByKey = new HashMap<String, Set<Label>>();
+
+    /**
+     * Number of updates so far
+     */
+    private int updates;
+
+    private LocalizingListener listener;
 
     void updateCaption(
             @Observes @CDIEvent(UPDATE_LOCALIZED_VALUES) final ParameterDTO parameters) {
-        for (final Entry<Component, String> entry : localizedCaptions
+        updates++;
+        final TextBundle bundle = getTextBundle();
+
+        for (final Entry<String, Set<Component>> entry : captionsByKey
                 .entrySet()) {
-            try {
-                entry.getKey().setCaption(
-                        textBundle.get().getText(entry.getValue()));
-            } catch (final UnsatisfiedResolutionException e) {
-                entry.getKey()
-                        .setCaption("No TextBundle implementation found!");
+            final String text = resolve(bundle, entry.getKey());
+            for (final Component component : entry.getValue()) {
+                applyCaption(component, text);
+                localizedCaptions.get(component).update = updates;
             }
         }
 
-        for (final Entry<Label, String> entry : localizedLabelValues.entrySet()) {
-            try {
-                entry.getKey().setValue(
-                        textBundle.get().getText(entry.getValue()));
-            } catch (final UnsatisfiedResolutionException e) {
-                entry.getKey()
-                        .setCaption("No TextBundle implementation found!");
+        for (final Entry<String, Set<Label>> entry : labelValuesByKey
+                .entrySet()) {
+            final String text = resolve(bundle, entry.getKey());
+            for (final Label label : entry.getValue()) {
+                applyLabelText(label, text);
+                localizedLabelValues.get(label).update = updates;
             }
         }
     }
 
+    /**
+     * Registers a component whose caption has been set to the current text of
+     * the key.
+     * 
+     * @param component
+     * @param captionKey
+     */
     public void addLocalizedCaption(final Component component,
             final String captionKey) {
-        localizedCaptions.put(component, captionKey);
+        listen(component);
+        final Registration previous = localizedCaptions.put(component,
+                new Registration(captionKey, updates));
+        if (previous != null) {
+            removeFromGroup(captionsByKey, previous.key, component);
+        }
+        if (component.getUI() != null) {
+            addToGroup(captionsByKey, captionKey, component);
+        }
     }
 
+    /**
+     * Registers a label whose value has been set to the current text of the
+     * key.
+     * 
+     * @param label
+     * @param labelValueKey
+     */
     public void addLocalizedLabelValue(final Label label,
             final String labelValueKey) {
-        localizedLabelValues.put(label, labelValueKey);
+        listen(label);
+        final Registration previous = localizedLabelValues.put(label,
+                new Registration(labelValueKey, updates));
+        if (previous != null) {
+            removeFromGroup(labelValuesByKey, previous.key, label);
+        }
+        if (label.getUI() != null) {
+            addToGroup(labelValuesByKey, labelValueKey, label);
+        }
+    }
+
+    /**
+     * Registers several components at once.
+     * 
+     * @param captionKeys
+     *            caption keys by component
+     */
+    public void addLocalizedCaptions(
+            final Map<? extends Component, String> captionKeys) {
+        for (final Entry<? extends Component, String> entry : captionKeys
+                .entrySet()) {
+            addLocalizedCaption(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Registers several labels at once.
+     * 
+     * @param labelValueKeys
+     *            value keys by label
+     */
+    public void addLocalizedLabelValues(
+            final Map<? extends Label, String> labelValueKeys) {
+        for (final Entry<? extends Label, String> entry : labelValueKeys
+                .entrySet()) {
+            addLocalizedLabelValue(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Adds the component to the update groups and applies the current texts
+     * if it missed updates while detached.
+     * 
+     * @param component
+     */
+    void attached(final Component component) {
+        final Registration caption = localizedCaptions.get(component);
+        if (caption != null) {
+            addToGroup(captionsByKey, caption.key, component);
+            if (caption.update != updates) {
+                applyCaption(component, resolve(getTextBundle(), caption.key));
+                caption.update = updates;
+            }
+        }
+        final Registration labelValue = localizedLabelValues.get(component);
+        if (labelValue != null) {
+            final Label label = (Label) component;
+            addToGroup(labelValuesByKey, labelValue.key, label);
+            if (labelValue.update != updates) {
+                applyLabelText(label,
+                        resolve(getTextBundle(), labelValue.key));
+                labelValue.update = updates;
+            }
+        }
+    }
+
+    /**
+     * Removes the component from the update groups. It stays registered
+     * (weakly) in case it's attached again.
+     * 
+     * @param component
+     */
+    void detached(final Component component) {
+        final Registration caption = localizedCaptions.get(component);
+        if (caption != null) {
+            removeFromGroup(captionsByKey, caption.key, component);
+        }
+        final Registration labelValue = localizedLabelValues.get(component);
+        if (labelValue != null) {
+            removeFromGroup(labelValuesByKey, labelValue.key,
+                    (Label) component);
+        }
+    }
+
+    private TextBundle getTextBundle() {
+        try {
+            return textBundle.get();
+        } catch (final UnsatisfiedResolutionException e) {
+            return null;
+        }
+    }
+
+    private static String resolve(final TextBundle bundle, final String key) {
+        return bundle != null ? bundle.getText(key) : NO_TEXT_BUNDLE;
+    }
+
+    private void applyCaption(final Component component, final String text) {
+        if (!equals(text, component.getCaption())) {
+            component.setCaption(text);
+        }
+    }
+
+    private void applyLabelText(final Label label, final String text) {
+        if (text == NO_TEXT_BUNDLE) {
+            // Without a TextBundle the notice is shown as the caption
+            applyCaption(label, text);
+        } else {
+            applyValue(label, text);
+        }
+    }
+
+    private void applyValue(final Label label, final String text) {
+        if (!equals(text, label.getValue())) {
+            label.setValue(text);
+        }
+    }
+
+    private static boolean equals(final String s1, final String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+
+    private void listen(final Component component) {
+        if (!localizedCaptions.containsKey(component)
+                && !localizedLabelValues.containsKey(component)) {
+            if (listener == null) {
+                listener = new LocalizingListener();
+            }
+            component.addAttachListener(listener);
+            component.addDetachListener(listener);
+        }
+    }
+
+    private static <C extends Component> void addToGroup(
+            final Map<String, Set<C>> groups, final String key,
+            final C component) {
+        Set<C> group = groups.get(key);
+        if (group == null) {
+            group = new HashSet<C>();
+            groups.put(key, group);
+        }
+        group.add(component);
+    }
+
+    private static <C extends Component> void removeFromGroup(
+            final Map<String, Set<C>> groups, final String key,
+            final C component) {
+        final Set<C> group = groups.get(key);
+        if (group != null) {
+            group.remove(component);
+            if (group.isEmpty()) {
+                groups.remove(key);
+            }
+        }
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(new HashMap<Component, Registration>(
+                localizedCaptions));
+        out.writeObject(new HashMap<Label, Registration>(localizedLabelValues));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        localizedCaptions = new WeakHashMap<Component, Registration>(
+                (Map<Component, Registration>) in.readObject());
+        localizedLabelValues = new WeakHashMap<Label, Registration>(
+                (Map<Label, Registration>) in.readObject());
+    }
+
+    /**
+     * The key of a registered component and the number of the update its text
+     * was last applied in.
+     */
+    private static class Registration implements Serializable {
+        private final String key;
+        private int update;
+
+        Registration(final String key, final int update) {
+            this.key = key;
+            this.update = update;
+        }
+    }
+
+    /**
+     * Forwards the attach and detach events of the registered components to
+     * this Localizer, the Localizer of the UI the components were created
+     * for. Serialized along with the components, so it refers to the same
+     * Localizer instance after deserialization.
+     */
+    private class LocalizingListener implements AttachListener,
+            DetachListener {
+        @Override
+        public void attach(final AttachEvent event) {
+            attached((Component) event.getSource());
+        }
+
+        @Override
+        public void detach(final DetachEvent event) {
+            detached((Component) event.getSource());
+        }
     }
 }
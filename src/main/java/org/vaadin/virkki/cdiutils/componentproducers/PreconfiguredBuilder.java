@@ -0,0 +1,230 @@
+package org.vaadin.virkki.cdiutils.componentproducers;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.enterprise.inject.CreationException;
+import javax.enterprise.inject.UnsatisfiedResolutionException;
+import javax.inject.Inject;
+
+import org.vaadin.virkki.cdiutils.TextBundle;
+
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Label;
+
+/**
+ * Builds all the {@link Preconfigured} component fields of an object (e.g. a
+ * view) in one pass. Meant for views with lots of components, the fields are
+ * declared without <code>@Inject</code>:
+ * 
+ * <pre>
+ * &#064;Preconfigured(captionKey = &quot;name&quot;)
+ * private TextField name;
+ * &#064;Preconfigured(captionKey = &quot;save&quot;)
+ * private Button save;
+ * 
+ * &#064;Inject
+ * private PreconfiguredBuilder builder;
+ * 
+ * protected void initView() {
+ *     builder.build(this);
+ *     ...
+ * }
+ * </pre>
+ * 
+ * The fields of each class are resolved only once. Components are created
+ * with the factory generated by {@link PreconfiguredProcessor} if there is
+ * one, otherwise the annotation is applied reflectively. The TextBundle and
+ * the Localizer are resolved once per build. Fields which already have a
+ * value are left untouched.
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+@SuppressWarnings("serial")
+public class PreconfiguredBuilder implements Serializable {
+    private static final String NO_TEXT_BUNDLE = "No TextBundle implementation found!";
+
+    private static final ConcurrentMap<Class<?>, List<PreconfiguredField>> FIELDS = new ConcurrentHashMap<Class<?>, List<PreconfiguredField>>();
+
+    @Inject
+    private ComponentProducers componentProducers;
+
+    /**
+     * Creates and configures the components of the @Preconfigured fields of
+     * the target which don't have a value yet.
+     * 
+     * @param target
+     */
+    public void build(final Object target) {
+        final BatchLocalization localization = new BatchLocalization();
+        try {
+            for (final PreconfiguredField field : getFields(target.getClass())) {
+                if (field.field.get(target) == null) {
+                    field.field.set(target,
+                            field.create(componentProducers, localization));
+                }
+            }
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        localization.register();
+    }
+
+    private static List<PreconfiguredField> getFields(final Class<?> cls) {
+        List<PreconfiguredField> fields = FIELDS.get(cls);
+        if (fields == null) {
+            fields = new ArrayList<PreconfiguredField>();
+            for (Class<?> current = cls; current != null
+                    && current != Object.class; current = current
+                    .getSuperclass()) {
+                for (final Field field : current.getDeclaredFields()) {
+                    final Preconfigured preconfigured = field
+                            .getAnnotation(Preconfigured.class);
+                    if (preconfigured != null
+                            && !field.isAnnotationPresent(Inject.class)
+                            && !Modifier.isStatic(field.getModifiers())) {
+                        fields.add(new PreconfiguredField(field, preconfigured));
+                    }
+                }
+            }
+            fields = Collections.unmodifiableList(fields);
+            FIELDS.putIfAbsent(cls, fields);
+        }
+        return fields;
+    }
+
+    /**
+     * Cached metadata of a @Preconfigured field.
+     */
+    private static class PreconfiguredField {
+        private final Field field;
+        private final Preconfigured preconfigured;
+        private final Class<? extends Component> type;
+        private final boolean lazy;
+
+        @SuppressWarnings("unchecked")
+        PreconfiguredField(final Field field, final Preconfigured preconfigured) {
+            this.field = field;
+            this.preconfigured = preconfigured;
+            lazy = LazyComponent.class.equals(field.getType());
+            if (lazy) {
+                type = (Class<? extends Component>) ComponentProducers
+                        .getLazyComponentType(field.getGenericType());
+            } else if (Component.class.isAssignableFrom(field.getType())) {
+                type = (Class<? extends Component>) field.getType();
+            } else {
+                throw new IllegalArgumentException(
+                        "@Preconfigured field is not a component: " + field);
+            }
+            final Class<? extends Component> implementation = preconfigured
+                    .implementation();
+            if (!implementation.equals(Component.class)
+                    && !type.isAssignableFrom(implementation)) {
+                throw new CreationException("Invalid @Preconfigured " + field
+                        + ": " + implementation.getName() + " is not a "
+                        + type.getName());
+            }
+            final String error = ComponentInstantiator
+                    .validate(ComponentInstantiator.getImplementation(type,
+                            preconfigured));
+            if (error != null) {
+                throw new CreationException("Invalid @Preconfigured " + field
+                        + ": " + error);
+            }
+            field.setAccessible(true);
+        }
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        Component create(final ComponentProducers componentProducers,
+                final PreconfiguredFactory.Localization localization) {
+            if (lazy) {
+                return new LazyComponent(type, preconfigured,
+                        componentProducers);
+            }
+            final Component generated = PreconfiguredFactories.get(
+                    field.getDeclaringClass()).createComponent(
+                    field.getName(), localization);
+            if (type.isInstance(generated)) {
+                return generated;
+            }
+            return componentProducers.produceComponent(type, preconfigured,
+                    localization);
+        }
+    }
+
+    /**
+     * Localizes the components with a TextBundle resolved once and collects
+     * the Localizer registrations.
+     */
+    private class BatchLocalization implements
+            PreconfiguredFactory.Localization {
+        private final Map<Component, String> captionKeys = new HashMap<Component, String>();
+        private final Map<Label, String> labelValueKeys = new HashMap<Label, String>();
+        private TextBundle textBundle;
+        private boolean resolved;
+
+        private TextBundle getTextBundle() {
+            if (!resolved) {
+                resolved = true;
+                try {
+                    textBundle = componentProducers.getTextBundle();
+                } catch (final UnsatisfiedResolutionException e) {
+                    textBundle = null;
+                }
+            }
+            return textBundle;
+        }
+
+        @Override
+        public void localizeCaption(final Component component,
+                final String captionKey, final boolean localized) {
+            final TextBundle bundle = getTextBundle();
+            if (bundle == null) {
+                component.setCaption(NO_TEXT_BUNDLE);
+            } else {
+                component.setCaption(bundle.getText(captionKey));
+                if (localized) {
+                    captionKeys.put(component, captionKey);
+                }
+            }
+        }
+
+        @Override
+        public void localizeLabelValue(final Label label,
+                final String labelValueKey, final boolean localized) {
+            final TextBundle bundle = getTextBundle();
+            if (bundle == null) {
+                label.setCaption(NO_TEXT_BUNDLE);
+            } else {
+                label.setValue(bundle.getText(labelValueKey));
+                if (localized) {
+                    labelValueKeys.put(label, labelValueKey);
+                }
+            }
+        }
+
+        /**
+         * Registers the components to the Localizer of the current UI.
+         */
+        void register() {
+            if (captionKeys.isEmpty() && labelValueKeys.isEmpty()) {
+                return;
+            }
+            final Localizer localizer = componentProducers.getLocalizer();
+            if (!captionKeys.isEmpty()) {
+                localizer.addLocalizedCaptions(captionKeys);
+            }
+            if (!labelValueKeys.isEmpty()) {
+                localizer.addLocalizedLabelValues(labelValueKeys);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.vaadin.virkki.cdiutils.componentproducers;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.spi.Extension;
+import javax.enterprise.inject.spi.InjectionPoint;
+import javax.enterprise.inject.spi.ProcessInjectionTarget;
+
+import com.vaadin.ui.Component;
+
+/**
+ * CDI extension validating {@link Preconfigured#implementation()} declarations
+ * at deployment time.
+ *
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+public class PreconfiguredExtension implements Extension {
+
+    /**
+     * Reports a definition error for each @Preconfigured injection point whose
+     * implementation class is incompatible or can't be instantiated.
+     *
+     * @param processInjectionTarget
+     */
+    <T> void processInjectionTarget(
+            @Observes final ProcessInjectionTarget<T> processInjectionTarget) {
+        for (final InjectionPoint injectionPoint : processInjectionTarget
+                .getInjectionTarget().getInjectionPoints()) {
+            for (final Annotation annotation : injectionPoint.getQualifiers()) {
+                if (annotation instanceof Preconfigured) {
+                    final String error = validate(injectionPoint,
+                            (Preconfigured) annotation);
+                    if (error != null) {
+                        processInjectionTarget
+                                .addDefinitionError(new IllegalArgumentException(
+                                        "Invalid @Preconfigured implementation at "
+                                                + injectionPoint + ": "
+                                                + error));
+                    }
+                }
+            }
+        }
+    }
+
+    private String validate(final InjectionPoint injectionPoint,
+            final Preconfigured preconfigured) {
+        final Class<? extends Component> implementation = preconfigured
+                .implementation();
+        if (implementation.equals(Component.class)) {
+            return null;
+        }
+
+        Type type = injectionPoint.getType();
+        if (type instanceof ParameterizedType
+                && LazyComponent.class.equals(((ParameterizedType) type)
+                        .getRawType())) {
+            type = ((ParameterizedType) type).getActualTypeArguments()[0];
+        }
+        if (type instanceof Class<?>
+                && !((Class<?>) type).isAssignableFrom(implementation)) {
+            return implementation.getName() + " is not assignable to "
+                    + ((Class<?>) type).getName();
+        }
+        return ComponentInstantiator.validate(implementation);
+    }
+}
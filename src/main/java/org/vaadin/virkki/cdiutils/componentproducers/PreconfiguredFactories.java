@@ -0,0 +1,70 @@
+package org.vaadin.virkki.cdiutils.componentproducers;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.vaadin.ui.Component;
+
+/**
+ * Lookup for the {@link PreconfiguredFactory} implementations generated by
+ * {@link PreconfiguredProcessor}. The result of the lookup is cached per
+ * class, including the absence of a factory.
+ *
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+class PreconfiguredFactories {
+    private static final PreconfiguredFactory NO_FACTORY = new PreconfiguredFactory() {
+        @Override
+        public Component createComponent(final String fieldName,
+                final Localization localization) {
+            return null;
+        }
+    };
+
+    private static final ConcurrentMap<Class<?>, PreconfiguredFactory> FACTORIES = new ConcurrentHashMap<Class<?>, PreconfiguredFactory>();
+
+    private PreconfiguredFactories() {
+    }
+
+    /**
+     * @param declaringClass
+     *            the class declaring the injection points
+     * @return the generated factory or a factory which always returns null
+     */
+    static PreconfiguredFactory get(final Class<?> declaringClass) {
+        PreconfiguredFactory factory = FACTORIES.get(declaringClass);
+        if (factory == null) {
+            factory = load(declaringClass);
+            FACTORIES.putIfAbsent(declaringClass, factory);
+        }
+        return factory;
+    }
+
+    private static PreconfiguredFactory load(final Class<?> declaringClass) {
+        final String factoryName = declaringClass.getName().replace('$', '_')
+                + PreconfiguredFactory.SUFFIX;
+        try {
+            return (PreconfiguredFactory) Class
+                    .forName(factoryName, true,
+                            declaringClass.getClassLoader())
+                    .getDeclaredConstructor().newInstance();
+        } catch (final ClassNotFoundException e) {
+            return NO_FACTORY;
+        } catch (final InvocationTargetException e) {
+            Logger.getLogger(PreconfiguredFactories.class.getName()).log(
+                    Level.WARNING,
+                    "Generated factory " + factoryName
+                            + " failed to initialize", e.getCause());
+            return NO_FACTORY;
+        } catch (final Exception e) {
+            Logger.getLogger(PreconfiguredFactories.class.getName()).log(
+                    Level.WARNING,
+                    "Unable to instantiate generated factory " + factoryName,
+                    e);
+            return NO_FACTORY;
+        }
+    }
+}
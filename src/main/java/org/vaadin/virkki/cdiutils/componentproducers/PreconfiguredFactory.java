@@ -0,0 +1,44 @@
+package org.vaadin.virkki.cdiutils.componentproducers;
+
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Label;
+
+/**
+ * Factory for the {@link Preconfigured} components of a single class.
+ * Implementations are generated at compile time by
+ * {@link PreconfiguredProcessor} and used by
+ * {@link org.vaadin.virkki.cdiutils.componentproducers.ComponentProducers
+ * ComponentProducers} instead of configuring the components reflectively.
+ *
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+public interface PreconfiguredFactory {
+    /**
+     * Suffix appended to the (flattened) name of the class declaring the
+     * injection points to get the name of the generated factory.
+     */
+    String SUFFIX = "_PreconfiguredFactory";
+
+    /**
+     * Creates and configures the component injected to the given field.
+     *
+     * @param fieldName
+     * @param localization
+     *            used for applying TextBundle based texts
+     * @return the component or null if the factory doesn't handle the field
+     */
+    Component createComponent(String fieldName, Localization localization);
+
+    /**
+     * Applies TextBundle based texts to generated components.
+     *
+     * @author Tomi Virkki / Vaadin Ltd
+     */
+    public interface Localization {
+        void localizeCaption(Component component, String captionKey,
+                boolean localized);
+
+        void localizeLabelValue(Label label, String labelValueKey,
+                boolean localized);
+    }
+}
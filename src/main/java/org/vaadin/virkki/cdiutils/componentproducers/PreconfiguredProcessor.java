@@ -0,0 +1,457 @@
+package org.vaadin.virkki.cdiutils.componentproducers;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
+
+/**
+ * Optional annotation processor generating a {@link PreconfiguredFactory} for
+ * each class with <code>@Inject @Preconfigured</code> component fields or
+ * <code>@Preconfigured</code> fields built by {@link PreconfiguredBuilder}.
+ * The generated factories construct and configure the components with plain
+ * setter calls so no annotation reflection is needed at runtime.
+ * <p>
+ * The processor isn't registered as a service, enable it explicitly with
+ * <code>-processor org.vaadin.virkki.cdiutils.componentproducers.PreconfiguredProcessor</code>
+ * (or the annotationProcessors configuration of maven-compiler-plugin).
+ *
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+@SupportedAnnotationTypes("org.vaadin.virkki.cdiutils.componentproducers.Preconfigured")
+public class PreconfiguredProcessor extends AbstractProcessor {
+    private static final String INJECT = "javax.inject.Inject";
+    private static final String COMPONENT = "com.vaadin.ui.Component";
+    private static final String LAZY_COMPONENT = "org.vaadin.virkki.cdiutils.componentproducers.LazyComponent";
+
+    /**
+     * Component types produced by ComponentProducers.
+     */
+    private static final Set<String> PRODUCED_TYPES = new HashSet<String>(
+            Arrays.asList("com.vaadin.ui.AbsoluteLayout",
+                    "com.vaadin.ui.Button", "com.vaadin.ui.CheckBox",
+                    "com.vaadin.ui.ComboBox", "com.vaadin.ui.CssLayout",
+                    "com.vaadin.ui.Embedded", "com.vaadin.ui.Form",
+                    "com.vaadin.ui.FormLayout", "com.vaadin.ui.GridLayout",
+                    "com.vaadin.ui.HorizontalLayout",
+                    "com.vaadin.ui.HorizontalSplitPanel",
+                    "com.vaadin.ui.InlineDateField", "com.vaadin.ui.Label",
+                    "com.vaadin.ui.Link", "com.vaadin.ui.ListSelect",
+                    "com.vaadin.ui.LoginForm", "com.vaadin.ui.MenuBar",
+                    "com.vaadin.ui.NativeSelect",
+                    "com.vaadin.ui.OptionGroup", "com.vaadin.ui.Panel",
+                    "com.vaadin.ui.PasswordField",
+                    "com.vaadin.ui.PopupDateField",
+                    "com.vaadin.ui.ProgressIndicator",
+                    "com.vaadin.ui.RichTextArea", "com.vaadin.ui.Slider",
+                    "com.vaadin.ui.Table", "com.vaadin.ui.TabSheet",
+                    "com.vaadin.ui.TextArea", "com.vaadin.ui.TextField",
+                    "com.vaadin.ui.Tree", "com.vaadin.ui.TwinColSelect",
+                    "com.vaadin.ui.Upload", "com.vaadin.ui.VerticalLayout",
+                    "com.vaadin.ui.VerticalSplitPanel"));
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations,
+            final RoundEnvironment roundEnv) {
+        final Map<TypeElement, List<VariableElement>> fields = new LinkedHashMap<TypeElement, List<VariableElement>>();
+        for (final TypeElement annotation : annotations) {
+            for (final VariableElement field : ElementFilter
+                    .fieldsIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                if (isSupported(field)) {
+                    final TypeElement declaringType = (TypeElement) field
+                            .getEnclosingElement();
+                    if (!fields.containsKey(declaringType)) {
+                        fields.put(declaringType,
+                                new ArrayList<VariableElement>());
+                    }
+                    fields.get(declaringType).add(field);
+                }
+            }
+        }
+
+        for (final Entry<TypeElement, List<VariableElement>> entry : fields
+                .entrySet()) {
+            try {
+                writeFactory(entry.getKey(), entry.getValue());
+            } catch (final IOException e) {
+                processingEnv.getMessager().printMessage(Kind.ERROR,
+                        "Unable to write PreconfiguredFactory: " + e,
+                        entry.getKey());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Injected fields are supported if ComponentProducers produces their
+     * type, fields built by PreconfiguredBuilder if they're components.
+     */
+    private boolean isSupported(final VariableElement field) {
+        if (field.asType().getKind() != TypeKind.DECLARED
+                || field.getModifiers().contains(Modifier.STATIC)) {
+            return false;
+        }
+        final TypeElement fieldType = (TypeElement) ((DeclaredType) field
+                .asType()).asElement();
+        final String typeName = fieldType.getQualifiedName().toString();
+        final boolean supportedType;
+        if (getAnnotation(field, INJECT) != null) {
+            supportedType = PRODUCED_TYPES.contains(typeName);
+        } else {
+            supportedType = isSubtype(fieldType, COMPONENT)
+                    && !typeName.equals(LAZY_COMPONENT);
+        }
+        return supportedType && getImplementation(field) != null;
+    }
+
+    private void writeFactory(final TypeElement declaringType,
+            final List<VariableElement> fields) throws IOException {
+        final String packageName = processingEnv.getElementUtils()
+                .getPackageOf(declaringType).getQualifiedName().toString();
+        final String binaryName = processingEnv.getElementUtils()
+                .getBinaryName(declaringType).toString();
+        final String simpleName = (packageName.isEmpty() ? binaryName
+                : binaryName.substring(packageName.length() + 1)).replace(
+                '$', '_')
+                + PreconfiguredFactory.SUFFIX;
+
+        final JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                packageName.isEmpty() ? simpleName : packageName + "."
+                        + simpleName, declaringType);
+        final PrintWriter out = new PrintWriter(file.openWriter());
+        try {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Generated by " + getClass().getName()
+                    + ", do not edit.");
+            out.println(" */");
+            out.println("public class " + simpleName + " implements "
+                    + PreconfiguredFactory.class.getName() + " {");
+            out.println("    @Override");
+            out.println("    @SuppressWarnings(\"deprecation\")");
+            out.println("    public " + COMPONENT
+                    + " createComponent(final String fieldName,");
+            out.println("            final "
+                    + PreconfiguredFactory.Localization.class
+                            .getCanonicalName() + " localization) {");
+            for (final VariableElement field : fields) {
+                writeField(out, field);
+            }
+            out.println("        return null;");
+            out.println("    }");
+            out.println("}");
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeField(final PrintWriter out, final VariableElement field) {
+        final TypeElement implementation = getImplementation(field);
+        final String type = implementation.getQualifiedName().toString();
+        final Map<String, Object> values = getValues(field);
+
+        out.println("        if (" + literal(field.getSimpleName().toString())
+                + ".equals(fieldName)) {");
+        out.println("            final " + type + " component = new " + type
+                + "();");
+
+        // Component API
+        call(out, "setEnabled", values.get("enabled"));
+        call(out, "setVisible", values.get("visible"));
+        call(out, "setReadOnly", values.get("readOnly"));
+        for (final Object style : (List<?>) values.get("styleName")) {
+            call(out, "addStyleName", style);
+        }
+        final String caption = (String) values.get("caption");
+        final String captionKey = (String) values.get("captionKey");
+        final String labelValueKey = (String) values.get("labelValueKey");
+        final Object localized = values.get("localized");
+        if (caption.isEmpty()) {
+            if (!captionKey.isEmpty()) {
+                out.println("            localization.localizeCaption(component, "
+                        + literal(captionKey) + ", " + localized + ");");
+            }
+        } else {
+            call(out, "setCaption", caption);
+        }
+        if (isSubtype(implementation, "com.vaadin.ui.Label")
+                && !labelValueKey.isEmpty()) {
+            out.println("            localization.localizeLabelValue(component, "
+                    + literal(labelValueKey) + ", " + localized + ");");
+        }
+        if (!((String) values.get("id")).isEmpty()) {
+            call(out, "setId", values.get("id"));
+        }
+        if ((Boolean) values.get("sizeFull")) {
+            call(out, "setSizeFull");
+        } else if ((Boolean) values.get("sizeUndefined")) {
+            call(out, "setSizeUndefined");
+        } else {
+            if ((Float) values.get("width") > -1.0f) {
+                call(out, "setWidth", values.get("width"),
+                        values.get("widthUnits"));
+            }
+            if ((Float) values.get("height") > -1.0f) {
+                call(out, "setHeight", values.get("height"),
+                        values.get("heightUnits"));
+            }
+        }
+
+        // Field API
+        if (isSubtype(implementation, "com.vaadin.ui.Field")) {
+            if (!((String) values.get("requiredError")).isEmpty()) {
+                call(out, "setRequiredError", values.get("requiredError"));
+            }
+            call(out, "setRequired", values.get("required"));
+        }
+        if (isSubtype(implementation, "com.vaadin.ui.AbstractField")) {
+            if (!isSubtype(implementation, "com.vaadin.ui.Form")) {
+                call(out, "setInvalidAllowed", values.get("invalidAllowed"));
+            }
+            call(out, "setInvalidCommitted", values.get("invalidCommitted"));
+            call(out, "setValidationVisible", values.get("validationVisible"));
+            if ((Integer) values.get("tabIndex") > -1) {
+                call(out, "setTabIndex", values.get("tabIndex"));
+            }
+        }
+        if (isSubtype(implementation, "com.vaadin.ui.AbstractComponent")) {
+            call(out, "setImmediate", values.get("immediate"));
+        }
+        if (isSubtype(implementation, "com.vaadin.ui.AbstractSelect")) {
+            call(out, "setNullSelectionAllowed",
+                    values.get("nullSelectionAllowed"));
+            call(out, "setMultiSelect", values.get("multiSelect"));
+            call(out, "setNewItemsAllowed", values.get("newItemsAllowed"));
+            call(out, "setItemCaptionMode", values.get("itemCaptionMode"));
+        }
+
+        // Layout API
+        final boolean orderedLayout = isSubtype(implementation,
+                "com.vaadin.ui.AbstractOrderedLayout");
+        final String marginInfo = marginInfo((List<?>) values.get("margin"));
+        if (marginInfo != null
+                && (orderedLayout || isSubtype(implementation,
+                        "com.vaadin.ui.GridLayout"))) {
+            out.println("            component.setMargin(" + marginInfo + ");");
+        }
+        if (orderedLayout) {
+            call(out, "setSpacing", values.get("spacing"));
+        }
+
+        out.println("            return component;");
+        out.println("        }");
+    }
+
+    /**
+     * Returns the class to instantiate for the field or null if the
+     * implementation can't be instantiated by the generated factory. The
+     * runtime creation path reports the problems of such fields.
+     */
+    private TypeElement getImplementation(final VariableElement field) {
+        final TypeElement fieldType = (TypeElement) ((DeclaredType) field
+                .asType()).asElement();
+        final TypeMirror implementationType = (TypeMirror) getValues(field)
+                .get("implementation");
+        TypeElement implementation = (TypeElement) processingEnv
+                .getTypeUtils().asElement(implementationType);
+        if (implementation.getQualifiedName().contentEquals(COMPONENT)) {
+            implementation = fieldType;
+        } else if (!processingEnv.getTypeUtils().isAssignable(
+                processingEnv.getTypeUtils().erasure(implementationType),
+                processingEnv.getTypeUtils().erasure(fieldType.asType()))) {
+            if (getAnnotation(field, INJECT) == null) {
+                // PreconfiguredBuilder rejects the field
+                return null;
+            }
+            implementation = fieldType;
+        }
+
+        if (!implementation.getModifiers().contains(Modifier.PUBLIC)
+                || implementation.getModifiers().contains(Modifier.ABSTRACT)) {
+            return null;
+        }
+        for (final ExecutableElement constructor : ElementFilter
+                .constructorsIn(implementation.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()
+                    && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return implementation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return @Preconfigured attribute values (including defaults) as plain
+     *         values: lists for arrays, TypeMirrors for classes and enum
+     *         constant references for enums
+     */
+    private Map<String, Object> getValues(final Element field) {
+        final Map<String, Object> values = new LinkedHashMap<String, Object>();
+        final AnnotationMirror preconfigured = getAnnotation(field,
+                Preconfigured.class.getName());
+        for (final Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv
+                .getElementUtils()
+                .getElementValuesWithDefaults(preconfigured).entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(),
+                    toValue(entry.getValue().getValue()));
+        }
+        return values;
+    }
+
+    private Object toValue(final Object value) {
+        if (value instanceof List<?>) {
+            final List<Object> list = new ArrayList<Object>();
+            for (final Object item : (List<?>) value) {
+                list.add(toValue(((AnnotationValue) item).getValue()));
+            }
+            return list;
+        } else if (value instanceof VariableElement) {
+            final VariableElement constant = (VariableElement) value;
+            return new EnumConstant(((TypeElement) constant
+                    .getEnclosingElement()).getQualifiedName()
+                    + "."
+                    + constant.getSimpleName());
+        }
+        return value;
+    }
+
+    private AnnotationMirror getAnnotation(final Element element,
+            final String annotationType) {
+        for (final AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement())
+                    .getQualifiedName().contentEquals(annotationType)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private boolean isSubtype(final TypeElement type, final String superType) {
+        final TypeElement superElement = processingEnv.getElementUtils()
+                .getTypeElement(superType);
+        return superElement != null
+                && processingEnv.getTypeUtils().isAssignable(
+                        processingEnv.getTypeUtils().erasure(type.asType()),
+                        processingEnv.getTypeUtils().erasure(
+                                superElement.asType()));
+    }
+
+    private static String marginInfo(final List<?> margin) {
+        final String[] m = new String[margin.size()];
+        for (int i = 0; i < m.length; i++) {
+            m[i] = String.valueOf(margin.get(i));
+        }
+        String arguments = null;
+        if (m.length == 1) {
+            arguments = m[0];
+        } else if (m.length == 2) {
+            arguments = m[0] + ", " + m[1] + ", " + m[0] + ", " + m[1];
+        } else if (m.length == 3) {
+            arguments = m[0] + ", " + m[1] + ", " + m[2] + ", " + m[1];
+        } else if (m.length == 4) {
+            arguments = m[0] + ", " + m[1] + ", " + m[2] + ", " + m[3];
+        }
+        return arguments != null ? "new com.vaadin.shared.ui.MarginInfo("
+                + arguments + ")" : null;
+    }
+
+    private static void call(final PrintWriter out, final String method,
+            final Object... arguments) {
+        final StringBuilder sb = new StringBuilder("            component.")
+                .append(method).append('(');
+        for (int i = 0; i < arguments.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(literal(arguments[i]));
+        }
+        out.println(sb.append(");"));
+    }
+
+    private static String literal(final Object value) {
+        if (value instanceof String) {
+            final StringBuilder sb = new StringBuilder("\"");
+            for (final char c : ((String) value).toCharArray()) {
+                switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        // Unicode escapes of line terminators are translated
+                        // before lexing and would end the string literal
+                        sb.append(String.format("\\%03o", (int) c));
+                    } else if (c > 0x7e) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+            return sb.append('"').toString();
+        } else if (value instanceof Float) {
+            return value + "f";
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * Source representation of an enum constant.
+     */
+    private static class EnumConstant {
+        private final String reference;
+
+        EnumConstant(final String reference) {
+            this.reference = reference;
+        }
+
+        @Override
+        public String toString() {
+            return reference;
+        }
+    }
+}
@@ -9,12 +9,13 @@ import java.lang.annotation.Target;
 import java.util.logging.Logger;
 
 import javax.annotation.PostConstruct;
-import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
 import org.vaadin.virkki.cdiutils.application.UIContext.UIScoped;
 import org.vaadin.virkki.cdiutils.componentproducers.Preconfigured;
 
+import com.vaadin.server.VaadinSession;
+
 /**
  * Abstract implementation of CDI Utils MVP-pattern presenter. Associated
  * {@link org.vaadin.virkki.cdiutils.mvp.View View} interface extension is
@@ -31,7 +32,7 @@ public abstract class AbstractPresenter<T extends View> implements Serializable
     @Preconfigured
     protected transient Logger logger;
     @Inject
-    private Instance<View> viewInstance;
+    private MvpExtension mvpExtension;
 
     protected T view;
 
@@ -41,9 +42,9 @@ public abstract class AbstractPresenter<T extends View> implements Serializable
     @PostConstruct
     protected void postConstruct() {
         // ViewInterface must be defined
-        final Class<? extends View> viewInterface = getClass().getAnnotation(
-                ViewInterface.class).value();
-        view = (T) viewInstance.select(viewInterface).get();
+        final Class<? extends View> viewInterface = mvpExtension
+                .getPresenterViewInterface(getClass());
+        view = (T) mvpExtension.getView(viewInterface);
 
         initPresenter();
         logger.info("Presenter initialized: " + getClass());
@@ -59,6 +60,24 @@ public abstract class AbstractPresenter<T extends View> implements Serializable
      */
     public abstract void viewOpened();
 
+    /**
+     * Runs the task while holding the lock of the current VaadinSession. The
+     * lock is reentrant, so this may also be called from request threads and
+     * from observers of asynchronous view events, which are already invoked
+     * while holding it.
+     * 
+     * @param task
+     */
+    protected void access(final Runnable task) {
+        final VaadinSession session = VaadinSession.getCurrent();
+        session.lock();
+        try {
+            task.run();
+        } finally {
+            session.unlock();
+        }
+    }
+
     /**
      * Declares a view interface for CDI Utils MVP-pattern presenter
      * implementation.
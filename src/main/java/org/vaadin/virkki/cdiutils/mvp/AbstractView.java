@@ -2,6 +2,7 @@ package org.vaadin.virkki.cdiutils.mvp;
 
 import javax.enterprise.event.Observes;
 import javax.enterprise.event.Reception;
+import javax.inject.Inject;
 
 import org.vaadin.virkki.cdiutils.application.UIContext.UIScoped;
 import org.vaadin.virkki.cdiutils.componentproducers.Localizer;
@@ -14,22 +15,23 @@ import org.vaadin.virkki.cdiutils.componentproducers.Localizer;
 @SuppressWarnings("serial")
 @UIScoped
 public abstract class AbstractView extends ViewComponent implements View {
+    @Inject
+    private MvpExtension mvpExtension;
+
     private boolean initialized;
+    private boolean localizationPending;
 
     protected Class<? extends View> viewInterface;
+    private String viewOpenIdentifier;
 
-    @SuppressWarnings("unchecked")
     @Override
     public final void openView() {
         if (viewInterface == null) {
-            // Determine the view interface
-            for (final Class<?> clazz : AbstractView.this.getClass()
-                    .getInterfaces()) {
-                if (!clazz.equals(View.class)
-                        && View.class.isAssignableFrom(clazz)) {
-                    viewInterface = (Class<? extends View>) clazz;
-                }
-            }
+            viewInterface = mvpExtension.getViewInterface(getClass());
+        }
+        if (viewOpenIdentifier == null) {
+            viewOpenIdentifier = viewInterface.getName()
+                    + AbstractPresenter.VIEW_OPEN;
         }
         if (!initialized) {
             initView();
@@ -37,14 +39,29 @@ public abstract class AbstractView extends ViewComponent implements View {
             logger.info("View initialized: " + viewInterface);
         }
 
-        fireViewEvent(viewInterface.getName() + AbstractPresenter.VIEW_OPEN,
-                this);
+        if (!mvpExtension.viewOpened(viewInterface)) {
+            fireViewEvent(viewOpenIdentifier, this);
+        }
         logger.info("View accessed: " + viewInterface);
     }
 
     final void observeLocalize(
             @Observes(notifyObserver = Reception.IF_EXISTS) @CDIEvent(Localizer.UPDATE_LOCALIZED_VALUES) final ParameterDTO object) {
-        localize();
+        if (getUI() == null) {
+            // Localized once attached
+            localizationPending = true;
+        } else {
+            localize();
+        }
+    }
+
+    @Override
+    public void attach() {
+        super.attach();
+        if (localizationPending) {
+            localizationPending = false;
+            localize();
+        }
     }
 
     /**
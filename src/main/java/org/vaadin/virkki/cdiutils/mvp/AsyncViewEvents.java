@@ -0,0 +1,259 @@
+package org.vaadin.virkki.cdiutils.mvp;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.ContextNotActiveException;
+import javax.enterprise.event.Event;
+
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+
+/**
+ * Delivers view events to their observers outside of the request thread.
+ * Events are queued per UI and the events of a UI are delivered in the order
+ * they were fired by one worker at a time. A coalesced event replaces a
+ * pending event of the same method identifier fired by the same source and
+ * takes its place at the end of the queue, so only the latest parameters are
+ * delivered. Other events are never coalesced.
+ * <p>
+ * Pending events of a UI which has been closed or detached from its session
+ * are dropped, so observers are never resolved for a UI whose UI scoped beans
+ * have already been destroyed.
+ * <p>
+ * Each event is delivered while holding the lock of the VaadinSession, with
+ * the UI and VaadinSession of the firing view as current instances, so the
+ * observers may update the views like request handling code does. The firing
+ * request doesn't wait for the observers, but the requests of the session
+ * that arrive during delivery do. The changes reach the client on its next
+ * roundtrip.
+ * <p>
+ * The CDI session and request contexts are not active on worker threads.
+ * UI scoped observers (presenters) are resolved through the UI scope
+ * container bound to the VaadinSession by earlier requests. If there's no
+ * valid binding (e.g. the HTTP session has just been replaced), the
+ * resolution fails with a ContextNotActiveException and the event is dropped
+ * with a warning. Session and request scoped beans can't be used by the
+ * observers.
+ * <p>
+ * The number of worker threads is configured with system property
+ * {@value #THREADS} (defaults to the number of processors).
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+class AsyncViewEvents {
+    static final String THREADS = "org.vaadin.virkki.cdiutils.asyncViewEventThreads";
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncViewEvents.class
+            .getName());
+
+    private static final Map<UI, UIEventQueue> QUEUES = new HashMap<UI, UIEventQueue>();
+    private static ExecutorService executor;
+
+    private AsyncViewEvents() {
+    }
+
+    /**
+     * Queues the event for the current UI.
+     * 
+     * @param event
+     *            the event selected with the qualifier of the method identifier
+     * @param source
+     *            the component firing the event
+     * @param methodIdentifier
+     * @param parameters
+     * @param coalesce
+     *            true if the event replaces a pending event of the same
+     *            source and method identifier
+     */
+    static void fire(final Event<ParameterDTO> event, final Object source,
+            final String methodIdentifier, final ParameterDTO parameters,
+            final boolean coalesce) {
+        final UI ui = UI.getCurrent();
+        if (ui == null) {
+            throw new IllegalStateException(
+                    "Asynchronous view events can only be fired from a UI thread");
+        }
+        synchronized (QUEUES) {
+            UIEventQueue queue = QUEUES.get(ui);
+            if (queue == null) {
+                queue = new UIEventQueue(ui, ui.getSession(), Thread
+                        .currentThread().getContextClassLoader());
+                QUEUES.put(ui, queue);
+                getExecutor().execute(queue);
+            }
+            // A unique key for events which aren't coalesced
+            final Object key = coalesce ? new CoalescingKey(source,
+                    methodIdentifier) : new Object();
+            // Removed first so that the event moves to the end of the queue
+            queue.pending.remove(key);
+            queue.pending.put(key, new PendingEvent(event, parameters));
+        }
+    }
+
+    /**
+     * Stops the workers. Events fired afterwards start new ones.
+     */
+    static void shutdown() {
+        synchronized (QUEUES) {
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+            QUEUES.clear();
+        }
+    }
+
+    private static ExecutorService getExecutor() {
+        if (executor == null) {
+            final int threads = Integer.getInteger(THREADS, Runtime
+                    .getRuntime().availableProcessors());
+            final ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
+                    threads, threads, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(final Runnable runnable) {
+                            final Thread thread = new Thread(runnable,
+                                    "cdiutils-view-events-"
+                                            + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            threadPool.allowCoreThreadTimeOut(true);
+            executor = threadPool;
+        }
+        return executor;
+    }
+
+    private static class PendingEvent {
+        private final Event<ParameterDTO> event;
+        private final ParameterDTO parameters;
+
+        PendingEvent(final Event<ParameterDTO> event,
+                final ParameterDTO parameters) {
+            this.event = event;
+            this.parameters = parameters;
+        }
+    }
+
+    private static class CoalescingKey {
+        private final Object source;
+        private final String methodIdentifier;
+
+        CoalescingKey(final Object source, final String methodIdentifier) {
+            this.source = source;
+            this.methodIdentifier = methodIdentifier;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof CoalescingKey)) {
+                return false;
+            }
+            final CoalescingKey other = (CoalescingKey) obj;
+            return source == other.source
+                    && methodIdentifier.equals(other.methodIdentifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(source)
+                    + methodIdentifier.hashCode();
+        }
+    }
+
+    /**
+     * Pending events of a UI, in the order they were fired. Scheduled for execution when the first event is
+     * queued and removed once drained.
+     */
+    private static class UIEventQueue implements Runnable {
+        private final UI ui;
+        private final VaadinSession session;
+        private final ClassLoader classLoader;
+        private final LinkedHashMap<Object, PendingEvent> pending = new LinkedHashMap<Object, PendingEvent>();
+
+        UIEventQueue(final UI ui, final VaadinSession session,
+                final ClassLoader classLoader) {
+            this.ui = ui;
+            this.session = session;
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public void run() {
+            final Thread thread = Thread.currentThread();
+            final ClassLoader previousClassLoader = thread
+                    .getContextClassLoader();
+            thread.setContextClassLoader(classLoader);
+            VaadinSession.setCurrent(session);
+            UI.setCurrent(ui);
+            try {
+                PendingEvent next;
+                while ((next = poll()) != null) {
+                    session.lock();
+                    try {
+                        // Checked again now that the UI can't be removed
+                        if (isAlive()) {
+                            next.event.fire(next.parameters);
+                        }
+                    } catch (final ContextNotActiveException e) {
+                        LOGGER.log(Level.WARNING,
+                                "UI scope unavailable, view event dropped", e);
+                    } catch (final RuntimeException e) {
+                        LOGGER.log(Level.WARNING,
+                                "Asynchronous view event observer failed", e);
+                    } finally {
+                        session.unlock();
+                    }
+                }
+            } finally {
+                UI.setCurrent(null);
+                VaadinSession.setCurrent(null);
+                thread.setContextClassLoader(previousClassLoader);
+            }
+        }
+
+        private PendingEvent poll() {
+            synchronized (QUEUES) {
+                if (!isAlive()) {
+                    if (!pending.isEmpty()) {
+                        LOGGER.fine("Dropped " + pending.size()
+                                + " view events of a closed UI");
+                    }
+                    pending.clear();
+                }
+                final Iterator<Entry<Object, PendingEvent>> iterator = pending
+                        .entrySet().iterator();
+                if (!iterator.hasNext()) {
+                    QUEUES.remove(ui);
+                    return null;
+                }
+                final PendingEvent next = iterator.next().getValue();
+                iterator.remove();
+                return next;
+            }
+        }
+
+        /**
+         * @return true if the UI is still attached to its session and not
+         *         closing, a detached UI no longer has a bean store
+         */
+        private boolean isAlive() {
+            return ui.getSession() == session && !ui.isClosing();
+        }
+    }
+}
@@ -4,6 +4,8 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.enterprise.util.AnnotationLiteral;
 import javax.inject.Qualifier;
@@ -19,19 +21,61 @@ import javax.inject.Qualifier;
 public @interface CDIEvent {
     String value();
 
+    /**
+     * Qualifier literal with the hash code computed once. Use
+     * {@link #of(String)} to share the literal of a method identifier.
+     * 
+     * @author Tomi Virkki / Vaadin Ltd
+     */
     @SuppressWarnings("serial")
     public static class CDIEventImpl extends AnnotationLiteral<CDIEvent>
             implements CDIEvent {
+        private static final ConcurrentMap<String, CDIEventImpl> INTERNED = new ConcurrentHashMap<String, CDIEventImpl>();
+
         private final String value;
+        private final int hashCode;
 
         public CDIEventImpl(final String value) {
             super();
             this.value = value;
+            // As specified by java.lang.annotation.Annotation
+            hashCode = (127 * "value".hashCode()) ^ value.hashCode();
+        }
+
+        /**
+         * @param value
+         * @return the shared literal for the method identifier
+         */
+        public static CDIEventImpl of(final String value) {
+            CDIEventImpl literal = INTERNED.get(value);
+            if (literal == null) {
+                literal = new CDIEventImpl(value);
+                final CDIEventImpl existing = INTERNED.putIfAbsent(value,
+                        literal);
+                if (existing != null) {
+                    literal = existing;
+                }
+            }
+            return literal;
         }
 
         @Override
         public final String value() {
             return value;
         }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            return obj instanceof CDIEvent
+                    && value.equals(((CDIEvent) obj).value());
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
     }
 }
\ No newline at end of file
@@ -5,42 +5,118 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.enterprise.event.Observes;
 import javax.enterprise.event.Reception;
 import javax.enterprise.event.TransactionPhase;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.UnsatisfiedResolutionException;
 import javax.enterprise.inject.spi.AfterBeanDiscovery;
+import javax.enterprise.inject.spi.AfterDeploymentValidation;
 import javax.enterprise.inject.spi.Bean;
 import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.BeforeShutdown;
 import javax.enterprise.inject.spi.Extension;
 import javax.enterprise.inject.spi.ObserverMethod;
+import javax.enterprise.inject.spi.ProcessAnnotatedType;
+import javax.enterprise.util.AnnotationLiteral;
 
 import org.vaadin.virkki.cdiutils.mvp.AbstractPresenter.ViewInterface;
 import org.vaadin.virkki.cdiutils.mvp.CDIEvent.CDIEventImpl;
 
 /**
  * CDI extension needed by CDI Utils MVP-pattern.
+ * <p>
+ * A dispatch table from each View interface to its presenter bean is built at
+ * deployment so that opening a view invokes the presenter directly instead of
+ * going through container event resolution. Only the beans are cached, the
+ * presenter instance of the current UI is resolved on each dispatch.
+ * <p>
+ * The View interfaces of views and presenters are indexed while the bean
+ * classes are processed, so they aren't resolved reflectively at runtime.
+ * <p>
+ * The extension is serialized along with the views it's injected to, but the
+ * tables are not. A deserialized copy only supports
+ * {@link #getViewInterface(Class)} and {@link #viewOpened(Class)}, the latter
+ * makes the view fire the open event which is observed by the deployed
+ * extension. Presenters are only initialized with the deployed extension.
  * 
  * @author Tomi Virkki / Vaadin Ltd
  */
 @SuppressWarnings("serial")
 public class MvpExtension implements Extension, Serializable {
+    private transient BeanManager beanManager;
+    private transient Map<Class<?>, Class<? extends View>> viewInterfaces = new ConcurrentHashMap<Class<?>, Class<? extends View>>();
+    private transient Map<Class<?>, Class<? extends View>> presenterViewInterfaces = new ConcurrentHashMap<Class<?>, Class<? extends View>>();
+    private transient Map<Class<? extends View>, View> viewReferences = new ConcurrentHashMap<Class<? extends View>, View>();
+    private transient Map<Class<? extends View>, Bean<?>> presenterBeans = new ConcurrentHashMap<Class<? extends View>, Bean<?>>();
+    private transient Map<Class<? extends View>, Bean<?>> directDispatch = new ConcurrentHashMap<Class<? extends View>, Bean<?>>();
+
+    /**
+     * Indexes the View interfaces of views and presenters.
+     * 
+     * @param processAnnotatedType
+     */
+    <T> void processAnnotatedType(
+            @Observes final ProcessAnnotatedType<T> processAnnotatedType) {
+        final Class<T> javaClass = processAnnotatedType.getAnnotatedType()
+                .getJavaClass();
+        if (javaClass.isInterface()) {
+            return;
+        }
+        if (View.class.isAssignableFrom(javaClass)) {
+            final Class<? extends View> viewInterface = findViewInterface(javaClass);
+            if (viewInterface != null) {
+                viewInterfaces.put(javaClass, viewInterface);
+            }
+        }
+        if (AbstractPresenter.class.isAssignableFrom(javaClass)) {
+            final ViewInterface annotation = javaClass
+                    .getAnnotation(ViewInterface.class);
+            if (annotation != null) {
+                presenterViewInterfaces.put(javaClass, annotation.value());
+            }
+        }
+    }
+
     /**
      * Adds a View open observer method for each bean extending
-     * AbstractPresenter.
+     * AbstractPresenter. The beans are looked up by bean class since a
+     * parameterized presenter type isn't assignable to the raw
+     * AbstractPresenter type.
      * 
      * @param afterBeanDiscovery
      * @param beanManager
      */
+    @SuppressWarnings("serial")
     void afterBeanDiscovery(
             @Observes final AfterBeanDiscovery afterBeanDiscovery,
             final BeanManager beanManager) {
+        this.beanManager = beanManager;
 
         final Iterator<Bean<?>> beanIterator = beanManager.getBeans(
-                AbstractPresenter.class).iterator();
+                Object.class, new AnnotationLiteral<Any>() {
+                }).iterator();
         while (beanIterator.hasNext()) {
             final Bean<?> bean = beanIterator.next();
+            if (!AbstractPresenter.class.isAssignableFrom(bean.getBeanClass())
+                    || !bean.getTypes().contains(bean.getBeanClass())) {
+                // Not a presenter (or a producer declared by one)
+                continue;
+            }
+            final Class<? extends View> viewInterface = getPresenterViewInterface(bean
+                    .getBeanClass());
+            if (viewInterface == null) {
+                afterBeanDiscovery.addDefinitionError(new RuntimeException(
+                        "@ViewInterface must be declared for Presenters: "
+                                + bean.getBeanClass().getName()));
+                continue;
+            }
+            presenterBeans.put(viewInterface, bean);
+
             afterBeanDiscovery
                     .addObserverMethod(new ObserverMethod<ParameterDTO>() {
                         @Override
@@ -51,14 +127,7 @@ public class MvpExtension implements Extension, Serializable {
                         @Override
                         public Set<Annotation> getObservedQualifiers() {
                             final Set<Annotation> qualifiers = new HashSet<Annotation>();
-                            if (getBeanClass().getAnnotation(
-                                    ViewInterface.class) == null) {
-                                throw new RuntimeException(
-                                        "@ViewInterface must be declared for Presenters");
-                            }
-                            final Class<? extends View> viewInterface = getBeanClass()
-                                    .getAnnotation(ViewInterface.class).value();
-                            qualifiers.add(new CDIEventImpl(viewInterface
+                            qualifiers.add(CDIEventImpl.of(viewInterface
                                     .getName() + AbstractPresenter.VIEW_OPEN));
                             return qualifiers;
                         }
@@ -78,15 +147,163 @@ public class MvpExtension implements Extension, Serializable {
                             return TransactionPhase.IN_PROGRESS;
                         }
 
-                        @SuppressWarnings("rawtypes")
                         @Override
                         public void notify(final ParameterDTO event) {
-                            final Object presenter = beanManager.getReference(
-                                    bean, getBeanClass(),
-                                    beanManager.createCreationalContext(bean));
-                            ((AbstractPresenter) presenter).viewOpened();
+                            getPresenter(bean).viewOpened();
                         }
                     });
         }
     }
+
+    /**
+     * Enables direct dispatch for the View interfaces whose open event has no
+     * other observers than the presenter.
+     * 
+     * @param afterDeploymentValidation
+     */
+    void afterDeploymentValidation(
+            @Observes final AfterDeploymentValidation afterDeploymentValidation) {
+        for (final Map.Entry<Class<? extends View>, Bean<?>> entry : presenterBeans
+                .entrySet()) {
+            if (beanManager.resolveObserverMethods(
+                    new ParameterDTO(null),
+                    CDIEventImpl.of(entry.getKey().getName()
+                            + AbstractPresenter.VIEW_OPEN)).size() == 1) {
+                directDispatch.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    void beforeShutdown(@Observes final BeforeShutdown beforeShutdown) {
+        AsyncViewEvents.shutdown();
+    }
+
+    /**
+     * Invokes {@link AbstractPresenter#viewOpened()} of the presenter of the
+     * given View interface using the dispatch table.
+     * 
+     * @param viewInterface
+     * @return false if the view open event must be fired instead
+     */
+    boolean viewOpened(final Class<? extends View> viewInterface) {
+        if (directDispatch == null) {
+            // Deserialized copy
+            return false;
+        }
+        final Bean<?> bean = directDispatch.get(viewInterface);
+        if (bean == null) {
+            return false;
+        }
+        getPresenter(bean).viewOpened();
+        return true;
+    }
+
+    /**
+     * @param viewClass
+     * @return the View interface implemented by the view class
+     */
+    Class<? extends View> getViewInterface(final Class<?> viewClass) {
+        if (viewInterfaces == null) {
+            // Deserialized copy
+            return findViewInterface(viewClass);
+        }
+        return lookup(viewInterfaces, viewClass, false);
+    }
+
+    /**
+     * @param presenterClass
+     * @return the View interface declared for the presenter class
+     */
+    Class<? extends View> getPresenterViewInterface(
+            final Class<?> presenterClass) {
+        return lookup(presenterViewInterfaces, presenterClass, true);
+    }
+
+    /**
+     * Returns a reference to the view implementing the View interface. The
+     * reference of a normal scoped view is a client proxy which is cached and
+     * shared by all the UIs. Other views (e.g. UI scoped ones) are resolved on
+     * each call.
+     * 
+     * @param viewInterface
+     * @return
+     * @throws UnsatisfiedResolutionException
+     *             if no view implements the interface
+     */
+    View getView(final Class<? extends View> viewInterface) {
+        View view = viewReferences.get(viewInterface);
+        if (view == null) {
+            final Bean<?> bean = beanManager.resolve(beanManager
+                    .getBeans(viewInterface));
+            if (bean == null) {
+                throw new UnsatisfiedResolutionException(
+                        "No view implementing " + viewInterface.getName());
+            }
+            view = (View) beanManager.getReference(bean, viewInterface,
+                    beanManager.createCreationalContext(bean));
+            if (beanManager.isNormalScope(bean.getScope())) {
+                viewReferences.put(viewInterface, view);
+            }
+        }
+        return view;
+    }
+
+    /**
+     * Looks up the class or its closest indexed superclass (e.g. for proxy
+     * subclasses) and caches the result for the class.
+     */
+    private Class<? extends View> lookup(
+            final Map<Class<?>, Class<? extends View>> index,
+            final Class<?> cls, final boolean presenter) {
+        Class<? extends View> viewInterface = index.get(cls);
+        if (viewInterface == null) {
+            for (Class<?> superclass = cls.getSuperclass(); superclass != null
+                    && viewInterface == null; superclass = superclass
+                    .getSuperclass()) {
+                viewInterface = index.get(superclass);
+            }
+            if (viewInterface == null) {
+                // Not in a bean archive
+                if (presenter) {
+                    final ViewInterface annotation = cls
+                            .getAnnotation(ViewInterface.class);
+                    viewInterface = annotation != null ? annotation.value()
+                            : null;
+                } else {
+                    viewInterface = findViewInterface(cls);
+                }
+            }
+            if (viewInterface != null) {
+                index.put(cls, viewInterface);
+            }
+        }
+        return viewInterface;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends View> findViewInterface(final Class<?> cls) {
+        for (Class<?> current = cls; current != null; current = current
+                .getSuperclass()) {
+            Class<? extends View> viewInterface = null;
+            for (final Class<?> clazz : current.getInterfaces()) {
+                if (!clazz.equals(View.class)
+                        && View.class.isAssignableFrom(clazz)) {
+                    viewInterface = (Class<? extends View>) clazz;
+                }
+            }
+            if (viewInterface != null) {
+                return viewInterface;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolves the presenter in the current context. UI scoped presenters
+     * have no client proxies, so the instance must not be cached here.
+     */
+    private AbstractPresenter<?> getPresenter(final Bean<?> bean) {
+        return (AbstractPresenter<?>) beanManager.getReference(bean,
+                bean.getBeanClass(), beanManager.createCreationalContext(bean));
+    }
 }
@@ -12,9 +12,23 @@ import java.util.List;
  */
 @SuppressWarnings("unchecked")
 public class ParameterDTO {
-    private final Object primaryParameter;
+    private static final Object[] NO_PARAMETERS = new Object[0];
 
-    private final Object[] secondaryParameters;
+    private Object primaryParameter;
+
+    private Object[] secondaryParameters;
+
+    /**
+     * Creates a DTO with the primary parameter only, without allocating the
+     * secondary parameter array.
+     * 
+     * @param primaryParameter
+     */
+    public ParameterDTO(final Object primaryParameter) {
+        super();
+        this.primaryParameter = primaryParameter;
+        secondaryParameters = NO_PARAMETERS;
+    }
 
     public ParameterDTO(final Object primaryParameter,
             final Object... secondaryParameters) {
@@ -23,6 +37,16 @@ public class ParameterDTO {
         this.secondaryParameters = secondaryParameters;
     }
 
+    /**
+     * Replaces the primary parameter of a reused DTO.
+     * 
+     * @param primaryParameter
+     */
+    void reset(final Object primaryParameter) {
+        this.primaryParameter = primaryParameter;
+        secondaryParameters = NO_PARAMETERS;
+    }
+
     public Object getPrimaryParameter() {
         return primaryParameter;
     }
@@ -32,7 +56,7 @@ public class ParameterDTO {
     }
 
     public <T extends Object> T getPrimaryParameter(final Class<T> clazz) {
-        return (T) getPrimaryParameter();
+        return (T) primaryParameter;
     }
 
     public <T extends Object> T getSecondaryParameter(final int index,
@@ -47,7 +71,7 @@ public class ParameterDTO {
     public <T extends Object> List<T> getSecondaryParametersList(
             final Class<T> clazz) {
         List<T> parameters = Collections.emptyList();
-        if (secondaryParameters != null) {
+        if (secondaryParameters != null && secondaryParameters.length > 0) {
             parameters = (List<T>) Arrays.asList(secondaryParameters);
         }
         return parameters;
@@ -1,5 +1,7 @@
 package org.vaadin.virkki.cdiutils.mvp;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import javax.enterprise.inject.Instance;
@@ -27,9 +29,17 @@ public abstract class ViewComponent extends CustomComponent {
     @Preconfigured
     protected transient Logger logger;
 
+    private transient TextBundle resolvedTextBundle;
+    private transient Map<String, javax.enterprise.event.Event<ParameterDTO>> selectedEvents;
+    private transient ParameterDTO reusableParameters;
+    private transient boolean reusableParametersInUse;
+
     protected String getText(final String key, final Object... params) {
         try {
-            return textBundle.get().getText(key, params);
+            if (resolvedTextBundle == null) {
+                resolvedTextBundle = textBundle.get();
+            }
+            return resolvedTextBundle.getText(key, params);
         } catch (final UnsatisfiedResolutionException e) {
             return "No TextBundle implementation found!";
         }
@@ -37,7 +47,102 @@ public abstract class ViewComponent extends CustomComponent {
 
     protected void fireViewEvent(final String methodIdentifier,
             final Object primaryParameter, final Object... secondaryParameters) {
-        viewEvent.select(new CDIEventImpl(methodIdentifier)).fire(
+        getViewEvent(methodIdentifier).fire(
                 new ParameterDTO(primaryParameter, secondaryParameters));
     }
+
+    /**
+     * Fires a view event without secondary parameters. Calls with two
+     * arguments resolve to this overload, so a subclass which overrides the
+     * varargs version must override this one too to intercept them.
+     * 
+     * @param methodIdentifier
+     * @param primaryParameter
+     */
+    protected void fireViewEvent(final String methodIdentifier,
+            final Object primaryParameter) {
+        getViewEvent(methodIdentifier).fire(new ParameterDTO(primaryParameter));
+    }
+
+    /**
+     * Fires a view event reusing the ParameterDTO instance of this component.
+     * Meant for high frequency events (value changes, scrolling). Observers
+     * must not keep a reference to the DTO after they return. A nested event
+     * fired by an observer gets a new instance.
+     * 
+     * @param methodIdentifier
+     * @param primaryParameter
+     */
+    protected void fireReusedViewEvent(final String methodIdentifier,
+            final Object primaryParameter) {
+        if (reusableParametersInUse) {
+            fireViewEvent(methodIdentifier, primaryParameter);
+            return;
+        }
+        if (reusableParameters == null) {
+            reusableParameters = new ParameterDTO(null);
+        }
+        reusableParametersInUse = true;
+        reusableParameters.reset(primaryParameter);
+        try {
+            getViewEvent(methodIdentifier).fire(reusableParameters);
+        } finally {
+            reusableParameters.reset(null);
+            reusableParametersInUse = false;
+        }
+    }
+
+    /**
+     * Fires a view event whose observers are invoked on a worker thread (see
+     * {@link AsyncViewEvents}), so the current request completes without
+     * waiting for them. The observers hold the session lock like request
+     * code does. The events of a UI are delivered in the order they were
+     * fired.
+     * 
+     * @param methodIdentifier
+     * @param primaryParameter
+     * @param secondaryParameters
+     */
+    protected void fireViewEventAsync(final String methodIdentifier,
+            final Object primaryParameter, final Object... secondaryParameters) {
+        AsyncViewEvents.fire(getViewEvent(methodIdentifier), this,
+                methodIdentifier, new ParameterDTO(primaryParameter,
+                        secondaryParameters), false);
+    }
+
+    /**
+     * Like {@link #fireViewEventAsync(String, Object, Object...)}, but a
+     * pending event of the same identifier fired by this component is
+     * replaced, only the latest parameters are delivered. Use for bursts of
+     * events where only the latest state matters (filtering, scrolling).
+     * 
+     * @param methodIdentifier
+     * @param primaryParameter
+     * @param secondaryParameters
+     */
+    protected void fireCoalescedViewEventAsync(final String methodIdentifier,
+            final Object primaryParameter, final Object... secondaryParameters) {
+        AsyncViewEvents.fire(getViewEvent(methodIdentifier), this,
+                methodIdentifier, new ParameterDTO(primaryParameter,
+                        secondaryParameters), true);
+    }
+
+    /**
+     * @param methodIdentifier
+     * @return the view event selected with the qualifier of the method
+     *         identifier, selected once per identifier
+     */
+    javax.enterprise.event.Event<ParameterDTO> getViewEvent(
+            final String methodIdentifier) {
+        if (selectedEvents == null) {
+            selectedEvents = new HashMap<String, javax.enterprise.event.Event<ParameterDTO>>();
+        }
+        javax.enterprise.event.Event<ParameterDTO> event = selectedEvents
+                .get(methodIdentifier);
+        if (event == null) {
+            event = viewEvent.select(CDIEventImpl.of(methodIdentifier));
+            selectedEvents.put(methodIdentifier, event);
+        }
+        return event;
+    }
 }
@@ -0,0 +1,304 @@
+package org.vaadin.virkki.cdiutils.application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.InjectionPoint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.virkki.cdiutils.application.UIContext.BeanStoreContainer;
+import org.vaadin.virkki.cdiutils.application.UIContext.UIBeanStore;
+
+/**
+ * Hammers the UI scope data structures of a single session from many threads.
+ * 
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+public class UIBeanStoreConcurrencyTest {
+    private static final int THREADS = 32;
+    private static final int ITERATIONS = 2000;
+    private static final int UIS = 16;
+    private static final int SLOTTED_BEANS = 8;
+    private static final int UNSLOTTED_BEANS = 8;
+
+    private ExecutorService executor;
+    private CountDownLatch start;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+        start = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void beansAreCreatedOncePerStore() throws Exception {
+        final UIBeanStore beanStore = new UIBeanStore(1);
+        final List<CountingBean> beans = createBeans();
+        final ConcurrentMap<CountingBean, Object> seen = new ConcurrentHashMap<CountingBean, Object>();
+
+        run(new Callable<Void>() {
+            @Override
+            public Void call() {
+                final Random random = new Random();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    final CountingBean bean = beans.get(random.nextInt(beans
+                            .size()));
+                    final Object instance = beanStore.getBeanInstance(
+                            bean.slot, bean, new StubCreationalContext());
+                    assertNotNull(instance);
+                    final Object previous = seen.putIfAbsent(bean, instance);
+                    if (previous != null) {
+                        assertSame(previous, instance);
+                    }
+                }
+                return null;
+            }
+        });
+
+        for (final CountingBean bean : beans) {
+            assertEquals(bean.toString(), 1, bean.created.get());
+        }
+    }
+
+    @Test
+    public void beanStoresAreCreatedOncePerUI() throws Exception {
+        final BeanStoreContainer container = new BeanStoreContainer();
+        final List<CountingBean> beans = createBeans();
+        final ConcurrentMap<Integer, UIBeanStore> seen = new ConcurrentHashMap<Integer, UIBeanStore>();
+        final ConcurrentMap<String, Object> instances = new ConcurrentHashMap<String, Object>();
+
+        run(new Callable<Void>() {
+            @Override
+            public Void call() {
+                final Random random = new Random();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    final int uiId = random.nextInt(UIS);
+                    final UIBeanStore beanStore = container.getBeanStore(uiId);
+                    final UIBeanStore previous = seen.putIfAbsent(uiId,
+                            beanStore);
+                    if (previous != null) {
+                        assertSame(previous, beanStore);
+                    }
+
+                    final CountingBean bean = beans.get(random.nextInt(beans
+                            .size()));
+                    final Object instance = beanStore.getBeanInstance(
+                            bean.slot, bean, new StubCreationalContext());
+                    final Object previousInstance = instances.putIfAbsent(uiId
+                            + "/" + bean, instance);
+                    if (previousInstance != null) {
+                        assertSame(previousInstance, instance);
+                    }
+                }
+                return null;
+            }
+        });
+
+        assertEquals(UIS, seen.size());
+        int created = 0;
+        for (final CountingBean bean : beans) {
+            created += bean.created.get();
+        }
+        assertEquals(instances.size(), created);
+    }
+
+    @Test
+    public void beanStoreMapStaysConsistent() throws Exception {
+        final UIBeanStoreMap map = new UIBeanStoreMap();
+        final int keysPerThread = 64;
+        final AtomicInteger threadIndex = new AtomicInteger();
+
+        run(new Callable<Void>() {
+            @Override
+            public Void call() {
+                final int first = threadIndex.getAndIncrement()
+                        * keysPerThread;
+                final UIBeanStore[] stores = new UIBeanStore[keysPerThread];
+                for (int i = 0; i < keysPerThread; i++) {
+                    stores[i] = new UIBeanStore(first + i);
+                }
+                for (int iteration = 0; iteration < ITERATIONS / 10; iteration++) {
+                    for (int i = 0; i < keysPerThread; i++) {
+                        assertNull(map.putIfAbsent(first + i, stores[i]));
+                        assertSame(stores[i], map.putIfAbsent(first + i,
+                                new UIBeanStore(first + i)));
+                    }
+                    for (int i = 0; i < keysPerThread; i++) {
+                        assertSame(stores[i], map.get(first + i));
+                    }
+                    for (int i = 0; i < keysPerThread; i += 2) {
+                        assertSame(stores[i], map.remove(first + i));
+                        assertNull(map.get(first + i));
+                    }
+                    for (int i = 1; i < keysPerThread; i += 2) {
+                        assertSame(stores[i], map.remove(first + i));
+                    }
+                }
+                // Leave every other key in place
+                for (int i = 0; i < keysPerThread; i += 2) {
+                    map.putIfAbsent(first + i, stores[i]);
+                }
+                return null;
+            }
+        });
+
+        assertEquals(THREADS * keysPerThread / 2, map.size());
+        assertEquals(THREADS * keysPerThread / 2, map.values().size());
+        for (int key = 0; key < THREADS * keysPerThread; key++) {
+            final UIBeanStore store = map.get(key);
+            if (key % 2 == 0) {
+                assertNotNull(store);
+                assertEquals(key, store.getUIId());
+            } else {
+                assertNull(store);
+            }
+        }
+    }
+
+    private List<CountingBean> createBeans() {
+        final List<CountingBean> beans = new ArrayList<CountingBean>();
+        for (int i = 0; i < SLOTTED_BEANS; i++) {
+            beans.add(new CountingBean(i));
+        }
+        for (int i = 0; i < UNSLOTTED_BEANS; i++) {
+            beans.add(new CountingBean(-1));
+        }
+        return beans;
+    }
+
+    /**
+     * Runs the task on all the threads at once and rethrows the first
+     * failure.
+     */
+    private void run(final Callable<Void> task) throws Exception {
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    return task.call();
+                }
+            }));
+        }
+        start.countDown();
+        for (final Future<Void> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    private static class CountingBean implements Bean<Object> {
+        private static final AtomicInteger IDS = new AtomicInteger();
+
+        private final int id = IDS.incrementAndGet();
+        private final int slot;
+        private final AtomicInteger created = new AtomicInteger();
+
+        CountingBean(final int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public Object create(final CreationalContext<Object> creationalContext) {
+            created.incrementAndGet();
+            // Widen the race window
+            Thread.yield();
+            return new Object();
+        }
+
+        @Override
+        public void destroy(final Object instance,
+                final CreationalContext<Object> creationalContext) {
+        }
+
+        @Override
+        public Set<Type> getTypes() {
+            return Collections.<Type> singleton(Object.class);
+        }
+
+        @Override
+        public Set<Annotation> getQualifiers() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Class<? extends Annotation> getScope() {
+            return UIContext.UIScoped.class;
+        }
+
+        @Override
+        public String getName() {
+            return null;
+        }
+
+        @Override
+        public Set<Class<? extends Annotation>> getStereotypes() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Class<?> getBeanClass() {
+            return Object.class;
+        }
+
+        @Override
+        public boolean isAlternative() {
+            return false;
+        }
+
+        @Override
+        public boolean isNullable() {
+            return false;
+        }
+
+        @Override
+        public Set<InjectionPoint> getInjectionPoints() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public String toString() {
+            return "bean" + id + "(slot " + slot + ")";
+        }
+    }
+
+    private static class StubCreationalContext implements
+            CreationalContext<Object> {
+        @Override
+        public void push(final Object incompleteInstance) {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package org.vaadin.virkki.cdiutils.application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.InjectionPoint;
+import javax.enterprise.inject.spi.PassivationCapable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.virkki.cdiutils.application.UIContext.BeanStoreContainer;
+import org.vaadin.virkki.cdiutils.application.UIContext.UIBeanStore;
+
+/**
+ * Writes UI bean stores in their compact passivation form and reads them
+ * back.
+ *
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+public class UIBeanStoreSerializationTest {
+    private final Map<String, Bean<?>> passivationCapableBeans = new HashMap<String, Bean<?>>();
+    private BeanManager beanManager;
+
+    @Before
+    public void setUp() {
+        beanManager = (BeanManager) Proxy.newProxyInstance(getClass()
+                .getClassLoader(), new Class<?>[] { BeanManager.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy,
+                            final Method method, final Object[] args) {
+                        if ("getPassivationCapableBean".equals(method
+                                .getName())) {
+                            return passivationCapableBeans.get(args[0]);
+                        } else if ("createCreationalContext".equals(method
+                                .getName())) {
+                            return new StubCreationalContext();
+                        }
+                        throw new UnsupportedOperationException(method
+                                .getName());
+                    }
+                });
+    }
+
+    @Test
+    public void instancesAreRestoredToTheirSlots() throws Exception {
+        final StubBean slotted = new PassivationCapableBean("slotted", 0);
+        final StubBean unslotted = new PassivationCapableBean("unslotted", -1);
+        final UIBeanStore beanStore = new UIBeanStore(3);
+        final Object slottedInstance = create(beanStore, slotted);
+        final Object unslottedInstance = create(beanStore, unslotted);
+
+        final UIBeanStore copy = roundTrip(beanStore);
+        assertEquals(3, copy.getUIId());
+        assertTrue(copy.isPassivated());
+        assertEquals(2, copy.getBeanCount());
+
+        copy.activate(beanManager);
+        assertFalse(copy.isPassivated());
+        final Object restoredSlotted = copy.getBeanInstance(slotted.slot,
+                slotted, null);
+        assertNotSame(slottedInstance, restoredSlotted);
+        assertEquals(slottedInstance, restoredSlotted);
+        // Moved from the map to its slot on first access
+        assertSame(restoredSlotted, copy.getBeanInstance(slotted.slot,
+                slotted, null));
+        assertEquals(unslottedInstance, copy.getBeanInstance(unslotted.slot,
+                unslotted, null));
+        // Restored, not created again
+        assertEquals(1, slotted.created);
+        assertEquals(1, unslotted.created);
+    }
+
+    @Test
+    public void activationIsOnlyDoneOnce() throws Exception {
+        final StubBean bean = new PassivationCapableBean("bean", 0);
+        final UIBeanStore beanStore = new UIBeanStore(1);
+        create(beanStore, bean);
+
+        final UIBeanStore copy = roundTrip(beanStore);
+        copy.activate(beanManager);
+        final Object restored = copy.getBeanInstance(bean.slot, bean, null);
+        copy.activate(beanManager);
+        assertSame(restored, copy.getBeanInstance(bean.slot, bean, null));
+    }
+
+    @Test
+    public void nonSerializableBeansAreSkipped() throws Exception {
+        final StubBean serializable = new PassivationCapableBean(
+                "serializable", 0);
+        final StubBean notPassivationCapable = new StubBean(1);
+        final StubBean notSerializable = new PassivationCapableBean(
+                "notSerializable", 2) {
+            @Override
+            public Object create(
+                    final CreationalContext<Object> creationalContext) {
+                created++;
+                return new Object();
+            }
+        };
+        final UIBeanStore beanStore = new UIBeanStore(1);
+        create(beanStore, serializable);
+        create(beanStore, notPassivationCapable);
+        create(beanStore, notSerializable);
+
+        final UIBeanStore copy = roundTrip(beanStore);
+        assertEquals(1, copy.getBeanCount());
+        copy.activate(beanManager);
+        assertNotNull(copy.getBeanInstance(serializable.slot, serializable,
+                null));
+        assertNull(copy.getBeanInstance(notPassivationCapable.slot,
+                notPassivationCapable, null));
+        assertNull(copy.getBeanInstance(notSerializable.slot,
+                notSerializable, null));
+    }
+
+    @Test
+    public void passivatedStoresAreDestroyedWithTheSession() throws Exception {
+        final StubBean bean = new PassivationCapableBean("bean", 0);
+        final BeanStoreContainer container = new BeanStoreContainer();
+        create(container.getBeanStore(1), bean);
+
+        final BeanStoreContainer copy = roundTrip(container);
+        setField(copy, "beanManager", beanManager);
+        final Method preDestroy = BeanStoreContainer.class
+                .getDeclaredMethod("preDestroy");
+        preDestroy.setAccessible(true);
+        preDestroy.invoke(copy);
+
+        assertEquals(1, bean.destroyed.size());
+        assertEquals(new Value("bean"), bean.destroyed.get(0));
+        assertTrue(copy.isDestroyed());
+    }
+
+    private Object create(final UIBeanStore beanStore, final StubBean bean) {
+        return beanStore.getBeanInstance(bean.slot, bean,
+                new StubCreationalContext());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(final T object) throws IOException,
+            ClassNotFoundException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        final ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        try {
+            return (T) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void setField(final Object object, final String name,
+            final Object value) throws Exception {
+        final Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(object, value);
+    }
+
+    @SuppressWarnings("serial")
+    private static class Value implements Serializable {
+        private final String text;
+
+        Value(final String text) {
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Value && ((Value) obj).text.equals(text);
+        }
+
+        @Override
+        public int hashCode() {
+            return text.hashCode();
+        }
+    }
+
+    private class PassivationCapableBean extends StubBean implements
+            PassivationCapable {
+        private final String id;
+
+        PassivationCapableBean(final String id, final int slot) {
+            super(slot);
+            this.id = id;
+            passivationCapableBeans.put(id, this);
+        }
+
+        @Override
+        public Object create(final CreationalContext<Object> creationalContext) {
+            created++;
+            return new Value(id);
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+    }
+
+    private static class StubBean implements Bean<Object> {
+        protected final int slot;
+        protected int created;
+        private final List<Object> destroyed = new ArrayList<Object>();
+
+        StubBean(final int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public Object create(final CreationalContext<Object> creationalContext) {
+            created++;
+            return new Value("stub");
+        }
+
+        @Override
+        public void destroy(final Object instance,
+                final CreationalContext<Object> creationalContext) {
+            assertNotNull(creationalContext);
+            destroyed.add(instance);
+        }
+
+        @Override
+        public Set<Type> getTypes() {
+            return Collections.<Type> singleton(Object.class);
+        }
+
+        @Override
+        public Set<Annotation> getQualifiers() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Class<? extends Annotation> getScope() {
+            return UIContext.UIScoped.class;
+        }
+
+        @Override
+        public String getName() {
+            return null;
+        }
+
+        @Override
+        public Set<Class<? extends Annotation>> getStereotypes() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Class<?> getBeanClass() {
+            return Object.class;
+        }
+
+        @Override
+        public boolean isAlternative() {
+            return false;
+        }
+
+        @Override
+        public boolean isNullable() {
+            return false;
+        }
+
+        @Override
+        public Set<InjectionPoint> getInjectionPoints() {
+            return Collections.emptySet();
+        }
+    }
+
+    private static class StubCreationalContext implements
+            CreationalContext<Object> {
+        @Override
+        public void push(final Object incompleteInstance) {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
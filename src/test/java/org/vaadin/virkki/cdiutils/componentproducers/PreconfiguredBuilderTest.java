@@ -0,0 +1,35 @@
+package org.vaadin.virkki.cdiutils.componentproducers;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import javax.enterprise.inject.CreationException;
+
+import org.junit.Test;
+
+import com.vaadin.ui.Button;
+import com.vaadin.ui.TextField;
+
+/**
+ * Validation of the fields built by {@link PreconfiguredBuilder}.
+ *
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+public class PreconfiguredBuilderTest {
+    @Test
+    public void incompatibleImplementationIsRejected() {
+        try {
+            new PreconfiguredBuilder().build(new IncompatibleImplementation());
+            fail("CreationException expected");
+        } catch (final CreationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("button"));
+            assertTrue(e.getMessage(),
+                    e.getMessage().contains(TextField.class.getName()));
+        }
+    }
+
+    private static class IncompatibleImplementation {
+        @Preconfigured(implementation = TextField.class)
+        private Button button;
+    }
+}
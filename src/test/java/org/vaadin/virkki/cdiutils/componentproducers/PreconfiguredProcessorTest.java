@@ -0,0 +1,179 @@
+package org.vaadin.virkki.cdiutils.componentproducers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.enterprise.context.spi.Contextual;
+import javax.inject.Inject;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.shared.ui.MarginInfo;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.PasswordField;
+
+/**
+ * Compiles classes with {@link PreconfiguredProcessor} enabled and runs the
+ * generated factories.
+ *
+ * @author Tomi Virkki / Vaadin Ltd
+ */
+public class PreconfiguredProcessorTest {
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("preconfigured", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    @Test
+    public void controlCharactersAreEscapedInGeneratedLiterals()
+            throws Exception {
+        final Component component = createComponent(
+                "test.Declarations",
+                "package test;\n"
+                        + "public class Declarations {\n"
+                        + "    @javax.inject.Inject\n"
+                        + "    @org.vaadin.virkki.cdiutils.componentproducers.Preconfigured("
+                        + "caption = \"line\\nbreak\\r\\ttab\\u0001\\u00e4\\\\\\\"\", "
+                        + "description = \"a\\nb\", styleName = \"x\\ty\")\n"
+                        + "    private com.vaadin.ui.Button button;\n" + "}\n",
+                "button");
+
+        assertEquals("line\nbreak\r\ttab\u0001\u00e4\\\"",
+                component.getCaption());
+        assertTrue(component.getStyleName().contains("x\ty"));
+    }
+
+    @Test
+    public void factoriesAreGeneratedForBuiltFields() throws Exception {
+        final Component component = createComponent(
+                "test.BuiltFields",
+                "package test;\n"
+                        + "public class BuiltFields {\n"
+                        + "    @org.vaadin.virkki.cdiutils.componentproducers.Preconfigured("
+                        + "caption = \"Name\", implementation = com.vaadin.ui.PasswordField.class)\n"
+                        + "    private com.vaadin.ui.AbstractTextField name;\n"
+                        + "}\n", "name");
+
+        assertTrue(component instanceof PasswordField);
+        assertEquals("Name", component.getCaption());
+    }
+
+    /**
+     * Compiles the source with the processor and creates the component of the
+     * field with the generated factory.
+     */
+    private Component createComponent(final String className,
+            final String source, final String fieldName) throws Exception {
+        final File sourceFile = new File(directory, className.replace('.',
+                File.separatorChar) + ".java");
+        sourceFile.getParentFile().mkdirs();
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(
+                sourceFile), "UTF-8");
+        try {
+            writer.write(source);
+        } finally {
+            writer.close();
+        }
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("A JDK is needed for compiling", compiler);
+        final StandardJavaFileManager fileManager = compiler
+                .getStandardFileManager(null, null, null);
+        try {
+            final List<String> options = Arrays.asList("-classpath",
+                    getClassPath(), "-d", directory.getPath(), "-s",
+                    directory.getPath(), "-encoding", "UTF-8", "-processor",
+                    PreconfiguredProcessor.class.getName());
+            final boolean compiled = compiler.getTask(null, fileManager, null,
+                    options, null,
+                    fileManager.getJavaFileObjects(sourceFile)).call();
+            assertTrue("Compilation with the generated factory failed",
+                    compiled);
+        } finally {
+            fileManager.close();
+        }
+
+        final URLClassLoader classLoader = new URLClassLoader(
+                new URL[] { directory.toURI().toURL() }, getClass()
+                        .getClassLoader());
+        final PreconfiguredFactory factory = PreconfiguredFactories
+                .get(classLoader.loadClass(className));
+        final Component component = factory.createComponent(fieldName,
+                new PreconfiguredFactory.Localization() {
+                    @Override
+                    public void localizeCaption(final Component component,
+                            final String captionKey, final boolean localized) {
+                    }
+
+                    @Override
+                    public void localizeLabelValue(final Label label,
+                            final String labelValueKey,
+                            final boolean localized) {
+                    }
+                });
+        assertNotNull("No generated factory for " + fieldName, component);
+        return component;
+    }
+
+    /**
+     * @return the class path of the library and the APIs the generated
+     *         sources use, independent of how the tests are launched
+     */
+    private static String getClassPath() throws Exception {
+        final Set<String> entries = new LinkedHashSet<String>();
+        for (final Class<?> type : new Class<?>[] { Preconfigured.class,
+                Inject.class, Contextual.class, Button.class,
+                MarginInfo.class }) {
+            entries.add(new File(type.getProtectionDomain().getCodeSource()
+                    .getLocation().toURI()).getPath());
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (final String entry : new ArrayList<String>(entries)) {
+            if (sb.length() > 0) {
+                sb.append(File.pathSeparatorChar);
+            }
+            sb.append(entry);
+        }
+        return sb.toString();
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}